@@ -165,9 +165,30 @@ public class ClassReader {
      *            the length of the class data.
      */
     public ClassReader(final byte[] b, final int off, final int len) {
+        this(b, off, len, true);
+    }
+
+    /**
+     * Constructs a new {@link ClassReader} object that is only used to read
+     * the constant pool and the class header, member and attribute
+     * declarations, e.g., to find the dependencies of a class. Unlike the
+     * other constructors, this one accepts class versions newer than V1_8,
+     * whose code this reader may not be able to parse, so the returned
+     * reader must not be used to rewrite the class.
+     *
+     * @param b
+     *            the bytecode of the class to be read.
+     * @return a reader of the constant pool of the class.
+     */
+    public static ClassReader forConstantPool(final byte[] b) {
+        return new ClassReader(b, 0, b.length, false);
+    }
+
+    private ClassReader(final byte[] b, final int off, final int len,
+            final boolean checkVersion) {
         this.b = b;
         // checks the class version
-        if (readShort(off + 6) > Opcodes.V1_8) {
+        if (checkVersion && readShort(off + 6) > Opcodes.V1_8) {
             throw new IllegalArgumentException();
         }
         // parses the constant pool
@@ -187,6 +208,7 @@ public class ClassReader {
             case ClassWriter.FLOAT:
             case ClassWriter.NAME_TYPE:
             case ClassWriter.INDY:
+            case ClassWriter.CONDY:
                 size = 5;
                 break;
             case ClassWriter.LONG:
@@ -243,6 +243,11 @@ public class ClassWriter extends ClassVisitor {
      */
     static final int INDY = 18;
 
+    /**
+     * The type of CONSTANT_Dynamic constant pool items (Java 11+).
+     */
+    static final int CONDY = 17;
+
     /**
      * The base value for all CONSTANT_MethodHandle constant pool items.
      * Internally, ASM store the 9 variations of CONSTANT_MethodHandle into 9
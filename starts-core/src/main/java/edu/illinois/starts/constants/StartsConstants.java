@@ -28,8 +28,13 @@ public interface StartsConstants {
 
     String ARGLINE_FIELD = "argLine";
     String EXCLUDES_FIELD = "excludes";
+    String INCLUDES_FIELD = "includes";
+    String INCLUDES_FILE_FIELD = "includesFile";
+    String TEST_FIELD = "test";
+    String SKIP_TESTS_FIELD = "skipTests";
+    String BASEDIR_FIELD = "basedir";
 
-    String STARTS_EXCLUDE_PROPERTY = "STARTS_EXCLUDES";
+    String STARTS_SELECTION_FILE = "STARTS_SELECTION_FILE";
 
     // simple characters:
     String DOT = ".";
@@ -57,10 +62,14 @@ public interface StartsConstants {
     String TEST_CLASSES = "test-classes";
     String JAR_CHECKSUMS = "jar-checksums";
     String CHANGED_CLASSES = "changed-classes";
+    String CLASS_DEPS = "class-deps";
     String CHECK_IF_ALL_AFFECTED = "checkIfAllAffected";
     String STARTS_AFFECTED_TESTS = "STARTS:AffectedTests: ";
 
     String JAR_EXTENSION = ".jar";
     String CLASS_EXTENSION = ".class";
 
+    // Dependencies that we filter out when filterLib is true
+    String JDEPS_FILTER = "java.*|sun.*";
+
 }
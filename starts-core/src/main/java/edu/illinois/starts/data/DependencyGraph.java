@@ -0,0 +1,286 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.data;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * A class-level dependency graph in which every class name is stored once and mapped to an int id.
+ * Edges are stored in compressed sparse row form, as int arrays, in both directions: the successors
+ * of vertex v are outTargets[outOffsets[v] .. outOffsets[v + 1]), and its predecessors are
+ * inSources[inOffsets[v] .. inOffsets[v + 1]). Names are only needed when we write results.
+ */
+public class DependencyGraph {
+    public static final int NO_ID = -1;
+
+    private final String[] names;
+    private final Map<String, Integer> ids;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inSources;
+
+    private DependencyGraph(String[] names, Map<String, Integer> ids, int[] outOffsets, int[] outTargets) {
+        this.names = names;
+        this.ids = ids;
+        this.outOffsets = outOffsets;
+        this.outTargets = outTargets;
+        this.inOffsets = new int[names.length + 1];
+        this.inSources = new int[outTargets.length];
+        for (int target : outTargets) {
+            inOffsets[target + 1]++;
+        }
+        for (int v = 0; v < names.length; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        int[] next = Arrays.copyOf(inOffsets, names.length);
+        for (int v = 0; v < names.length; v++) {
+            for (int i = outOffsets[v]; i < outOffsets[v + 1]; i++) {
+                inSources[next[outTargets[i]]++] = v;
+            }
+        }
+    }
+
+    public int getVertexCount() {
+        return names.length;
+    }
+
+    public int getEdgeCount() {
+        return outTargets.length;
+    }
+
+    public String getName(int id) {
+        return names[id];
+    }
+
+    /**
+     * Get the id of a class name.
+     *
+     * @param name The class name
+     * @return     The id of the class, or NO_ID if the class is not in the graph
+     */
+    public int getId(Object name) {
+        Integer id = ids.get(name);
+        return id == null ? NO_ID : id;
+    }
+
+    public int getOutStart(int id) {
+        return outOffsets[id];
+    }
+
+    public int getOutEnd(int id) {
+        return outOffsets[id + 1];
+    }
+
+    public int getOutTarget(int index) {
+        return outTargets[index];
+    }
+
+    public int getInStart(int id) {
+        return inOffsets[id];
+    }
+
+    public int getInEnd(int id) {
+        return inOffsets[id + 1];
+    }
+
+    public int getInSource(int index) {
+        return inSources[index];
+    }
+
+    /**
+     * Compute the ids of all vertices that can be reached from the given vertices, including the given vertices.
+     *
+     * @param start   The ids of the vertices from which to start
+     * @param forward Follow edges forward (from a class to its dependencies) if true, backward otherwise
+     * @return        The ids of the reachable vertices
+     */
+    public BitSet reachable(BitSet start, boolean forward) {
+        BitSet visited = (BitSet) start.clone();
+        int[] worklist = new int[names.length];
+        int size = 0;
+        for (int id = start.nextSetBit(0); id >= 0; id = start.nextSetBit(id + 1)) {
+            worklist[size++] = id;
+        }
+        int[] offsets = forward ? outOffsets : inOffsets;
+        int[] adjacent = forward ? outTargets : inSources;
+        while (size > 0) {
+            int vertex = worklist[--size];
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                int next = adjacent[i];
+                if (!visited.get(next)) {
+                    visited.set(next);
+                    worklist[size++] = next;
+                }
+            }
+        }
+        return visited;
+    }
+
+    /**
+     * Get a read-only set of class names that is backed by the given ids.
+     */
+    public VertexSet toVertexSet(BitSet vertexIds) {
+        return new VertexSet(vertexIds);
+    }
+
+    /**
+     * A read-only set of class names in this graph, backed by a bitset of their ids. Code that knows
+     * about the graph can work with the ids directly; other code can use it as any other set.
+     */
+    public class VertexSet extends AbstractSet<String> {
+        private final BitSet vertexIds;
+        private int size = NO_ID;
+
+        VertexSet(BitSet vertexIds) {
+            this.vertexIds = vertexIds;
+        }
+
+        public DependencyGraph getGraph() {
+            return DependencyGraph.this;
+        }
+
+        public BitSet getIds() {
+            return vertexIds;
+        }
+
+        @Override
+        public boolean contains(Object obj) {
+            int id = getId(obj);
+            return id != NO_ID && vertexIds.get(id);
+        }
+
+        @Override
+        public int size() {
+            if (size == NO_ID) {
+                size = vertexIds.cardinality();
+            }
+            return size;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int next = vertexIds.nextSetBit(0);
+
+                @Override
+                public boolean hasNext() {
+                    return next >= 0;
+                }
+
+                @Override
+                public String next() {
+                    if (next < 0) {
+                        throw new NoSuchElementException();
+                    }
+                    String name = names[next];
+                    next = vertexIds.nextSetBit(next + 1);
+                    return name;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+
+    /**
+     * Collects the edges of a graph. Each distinct class name is stored once, however many edges
+     * mention it, and duplicate edges are removed when the graph is built. The graph shares the
+     * string table of the builder, so the builder should not be used after build() is called.
+     */
+    public static class Builder {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private int[] sources = new int[1024];
+        private int[] targets = new int[1024];
+        private int edgeCount;
+
+        /**
+         * Get the id of a class name, adding the class as a vertex if it is not yet in the graph.
+         */
+        public int addVertex(String name) {
+            Integer id = ids.get(name);
+            if (id == null) {
+                id = names.size();
+                ids.put(name, id);
+                names.add(name);
+            }
+            return id;
+        }
+
+        public void addEdge(String source, String target) {
+            addEdge(addVertex(source), addVertex(target));
+        }
+
+        public void addEdge(int source, int target) {
+            if (edgeCount == sources.length) {
+                sources = Arrays.copyOf(sources, edgeCount * 2);
+                targets = Arrays.copyOf(targets, edgeCount * 2);
+            }
+            sources[edgeCount] = source;
+            targets[edgeCount] = target;
+            edgeCount++;
+        }
+
+        public int getEdgeCount() {
+            return edgeCount;
+        }
+
+        /**
+         * Create a builder with the same vertices and edges, which can be used and built independently of
+         * this one, e.g., to keep the edges of libraries for later builds.
+         */
+        public Builder copy() {
+            Builder copy = new Builder();
+            copy.ids.putAll(ids);
+            copy.names.addAll(names);
+            copy.sources = Arrays.copyOf(sources, Math.max(edgeCount, 1));
+            copy.targets = Arrays.copyOf(targets, Math.max(edgeCount, 1));
+            copy.edgeCount = edgeCount;
+            return copy;
+        }
+
+        public DependencyGraph build() {
+            int size = names.size();
+            int[] offsets = new int[size + 1];
+            for (int i = 0; i < edgeCount; i++) {
+                offsets[sources[i] + 1]++;
+            }
+            for (int v = 0; v < size; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] adjacent = new int[edgeCount];
+            int[] next = Arrays.copyOf(offsets, size);
+            for (int i = 0; i < edgeCount; i++) {
+                adjacent[next[sources[i]]++] = targets[i];
+            }
+            // sort each row and drop duplicate edges, compacting the rows as we go
+            int[] compactOffsets = new int[size + 1];
+            int write = 0;
+            for (int v = 0; v < size; v++) {
+                Arrays.sort(adjacent, offsets[v], offsets[v + 1]);
+                for (int i = offsets[v]; i < offsets[v + 1]; i++) {
+                    if (i == offsets[v] || adjacent[i] != adjacent[i - 1]) {
+                        adjacent[write++] = adjacent[i];
+                    }
+                }
+                compactOffsets[v + 1] = write;
+            }
+            return new DependencyGraph(names.toArray(new String[size]), ids, compactOffsets,
+                    Arrays.copyOf(adjacent, write));
+        }
+    }
+}
@@ -32,12 +32,29 @@ public class ZLCData implements StartsConstants {
         this.testsIdx = testsIdx;
     }
 
+    public URL getUrl() {
+        return url;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public Set<String> getTestsStr() {
+        return testsStr;
+    }
+
+    public Set<Integer> getTestsIdx() {
+        return testsIdx;
+    }
+
     @Override
     public String toString() {
         //we track dependencies that are not reached by any test because of *
         String data;
         switch (format) {
             case INDEXED:
+            case BINARY:
                 if (testsIdx.isEmpty()) {
                     data = join(WHITE_SPACE, url.toExternalForm(), checksum);
                 } else {
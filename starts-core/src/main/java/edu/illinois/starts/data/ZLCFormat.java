@@ -3,5 +3,6 @@ package edu.illinois.starts.data;
 public enum ZLCFormat {
     PLAIN_TEXT,  // store full URLs of tests
     INDEXED,  // store indices of tests
+    BINARY,  // store indices of tests in a binary, memory-mapped file
     ;
 }
@@ -0,0 +1,13 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.enums;
+
+/**
+ * The tool with which to extract class-level dependencies during RTS.
+ */
+public enum DependencyExtractor {
+    JDEPS,
+    ASM
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Analysis state that we keep in memory between builds of a project, when the JVM that runs Maven
+ * outlives a single build, e.g., with the Maven daemon (mvnd), which keeps the class realms of plugins
+ * and thus the static state of this class alive. Without such a JVM, every build starts with an empty
+ * state, and the analysis runs as before.
+ *
+ * <p>The state of a project is keyed by its base directory, and is dropped as soon as the classpath of
+ * the project changes: elements are compared in order, like the sf-classpath check of RunMojo, and jars
+ * are also compared by size and modification time, because a class loader keeps its jars open. The class
+ * loader of a dropped state is not closed, as the analysis of another module, which runs in another thread
+ * with -T, may still be using it; its jars are closed once it is garbage collected.
+ *
+ * <p>Only state that does not depend on the classes of the project is kept. The transitive closures of the
+ * tests and the checksums in the dependency file change whenever the project classes do, so reusing them
+ * would need the same change detection that the analysis already does with them.
+ */
+public class AnalysisState implements StartsConstants {
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static final Map<String, AnalysisState> STATES = new ConcurrentHashMap<>();
+
+    private final String classPathKey;
+    private ClassLoader classLoader;
+    private String libraryCache;
+    private DependencyGraph.Builder libraryEdges;
+
+    private AnalysisState(String classPathKey) {
+        this.classPathKey = classPathKey;
+    }
+
+    /**
+     * Get the state of a project, creating an empty state if there is none, or if the state that we have
+     * was kept for a different classpath.
+     */
+    public static AnalysisState forProject(String basedir, List<String> classPath) {
+        String key = getClassPathKey(classPath);
+        synchronized (STATES) {
+            AnalysisState state = STATES.get(basedir);
+            if (state != null && state.classPathKey.equals(key)) {
+                LOGGER.log(Level.FINE, "Reusing the analysis state of " + basedir);
+                return state;
+            }
+            if (state != null) {
+                LOGGER.log(Level.FINE, "The classpath changed; dropping the analysis state of " + basedir);
+                state.drop();
+            }
+            state = new AnalysisState(key);
+            STATES.put(basedir, state);
+            return state;
+        }
+    }
+
+    /**
+     * Drop the state of all projects.
+     */
+    public static void clear() {
+        synchronized (STATES) {
+            for (AnalysisState state : STATES.values()) {
+                state.drop();
+            }
+            STATES.clear();
+        }
+    }
+
+    static String getClassPathKey(List<String> classPath) {
+        StringBuilder key = new StringBuilder();
+        for (String path : classPath) {
+            key.append(path);
+            if (path.endsWith(JAR_EXTENSION)) {
+                File jar = new File(path);
+                key.append(WHITE_SPACE).append(jar.length()).append(WHITE_SPACE).append(jar.lastModified());
+            }
+            key.append(File.pathSeparator);
+        }
+        return key.toString();
+    }
+
+    public synchronized ClassLoader getClassLoader() {
+        return classLoader;
+    }
+
+    public synchronized void setClassLoader(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Get a builder that has the library edges that we kept, to which the edges of the project classes can
+     * be added.
+     *
+     * @return null if we kept no library edges that were loaded from the given graph cache
+     */
+    public synchronized DependencyGraph.Builder getLibraryEdges(String graphCache) {
+        if (libraryEdges == null || !graphCache.equals(libraryCache)) {
+            return null;
+        }
+        return libraryEdges.copy();
+    }
+
+    /**
+     * Keep a copy of the library edges in the builder, which were loaded from the given graph cache.
+     */
+    public synchronized void setLibraryEdges(String graphCache, DependencyGraph.Builder builder) {
+        this.libraryCache = graphCache;
+        this.libraryEdges = builder.copy();
+    }
+
+    private synchronized void drop() {
+        classLoader = null;
+        libraryEdges = null;
+    }
+}
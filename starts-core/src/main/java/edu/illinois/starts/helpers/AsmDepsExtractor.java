@@ -0,0 +1,496 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Level;
+import java.util.regex.Pattern;
+
+import edu.illinois.starts.asm.AnnotationVisitor;
+import edu.illinois.starts.asm.ClassReader;
+import edu.illinois.starts.asm.ClassVisitor;
+import edu.illinois.starts.asm.FieldVisitor;
+import edu.illinois.starts.asm.MethodVisitor;
+import edu.illinois.starts.asm.Opcodes;
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Extracts class-level dependencies from .class files in-process, using the ASM fork
+ * that ships with STARTS. The result has the same shape as the map that we get from
+ * parsing the output of "jdeps -v", but no tool is launched and no text is parsed.
+ */
+public class AsmDepsExtractor implements StartsConstants {
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static final String META_INF = "META-INF/";
+    private static final String MODULE_INFO = "module-info" + CLASS_EXTENSION;
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+    // constant pool tags that can refer to other types
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+    private static final int CONSTANT_METHOD_TYPE = 16;
+
+    private Pattern filter;
+
+    public AsmDepsExtractor(boolean filterLib) {
+        this.filter = filterLib ? Pattern.compile(JDEPS_FILTER) : null;
+    }
+
+    /**
+     * Compute the dependencies of all classes in the given directories, jars and .class files.
+     * This is the in-process equivalent of running "jdeps -v" on the paths.
+     *
+     * @param paths The directories, jars and .class files whose classes we want to analyze
+     * @return      A map from each class to the classes that it depends on
+     */
+    public Map<String, Set<String>> getDepMap(List<String> paths) {
+        Map<String, Set<String>> deps = new HashMap<>();
+        for (String path : paths) {
+            addDepsFromPath(path, deps, null);
+        }
+        return deps;
+    }
+
+    /**
+     * Compute the dependencies of all classes in the given directories and jars, and of
+     * all classes on the classpath that they transitively depend on. This is the in-process
+     * equivalent of running "jdeps -v -R -cp classPath" on the paths.
+     *
+     * @param paths     The directories and jars whose classes we want to analyze
+     * @param classPath The classpath in which to look up the classes that paths depend on
+     * @return          A map from each analyzed class to the classes that it depends on
+     */
+    public Map<String, Set<String>> getDepMapRecursive(List<String> paths, List<String> classPath) {
+        Map<String, Set<String>> deps = new HashMap<>();
+        Set<String> analyzed = new HashSet<>();
+        for (String path : paths) {
+            addDepsFromPath(path, deps, analyzed);
+        }
+        Deque<String> worklist = new ArrayDeque<>();
+        for (Set<String> targets : deps.values()) {
+            worklist.addAll(targets);
+        }
+        ClassPathLookup lookup = new ClassPathLookup(classPath);
+        try {
+            while (!worklist.isEmpty()) {
+                String className = worklist.poll();
+                if (!analyzed.add(className)) {
+                    continue;
+                }
+                byte[] bytes = lookup.find(className);
+                if (bytes == null) {
+                    continue;
+                }
+                String analyzedClass = addClassDeps(bytes, deps);
+                if (analyzedClass != null && deps.containsKey(analyzedClass)) {
+                    worklist.addAll(deps.get(analyzedClass));
+                }
+            }
+        } finally {
+            lookup.close();
+        }
+        return deps;
+    }
+
+    /**
+     * Add the dependencies of one class to the map. Like jdeps, we only add an entry if the
+     * class has at least one dependency that is not filtered out.
+     *
+     * @param bytes The bytecode of the class
+     * @param deps  The map to which to add the dependencies of the class
+     * @return      The fully-qualified name of the class, or null if the bytes could not be parsed
+     */
+    public String addClassDeps(byte[] bytes, Map<String, Set<String>> deps) {
+        ClassReader reader;
+        try {
+            reader = ClassReader.forConstantPool(bytes);
+        } catch (RuntimeException re) {
+            LOGGER.log(Level.WARNING, "@@CouldNotParseClass: " + re);
+            return null;
+        }
+        String className = toFQN(reader.getClassName());
+        Set<String> targets = getDependencies(reader);
+        targets.remove(className);
+        if (filter != null) {
+            for (String target : new HashSet<>(targets)) {
+                if (filter.matcher(target).matches()) {
+                    targets.remove(target);
+                }
+            }
+        }
+        if (!targets.isEmpty()) {
+            Set<String> existing = deps.get(className);
+            if (existing == null) {
+                deps.put(className, targets);
+            } else {
+                existing.addAll(targets);
+            }
+        }
+        return className;
+    }
+
+    private void addDepsFromPath(String path, final Map<String, Set<String>> deps, final Set<String> analyzed) {
+        File file = new File(path);
+        if (file.isDirectory()) {
+            try {
+                Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path classFile, BasicFileAttributes attrs) throws IOException {
+                        String name = classFile.getFileName().toString();
+                        if (name.endsWith(CLASS_EXTENSION) && !name.equals(MODULE_INFO)) {
+                            addAnalyzed(addClassDeps(Files.readAllBytes(classFile), deps), analyzed);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        } else if (path.endsWith(CLASS_EXTENSION) && file.isFile()) {
+            try {
+                addAnalyzed(addClassDeps(Files.readAllBytes(file.toPath()), deps), analyzed);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        } else if (path.endsWith(JAR_EXTENSION) && file.exists()) {
+            try (JarFile jarFile = new JarFile(file)) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    if (isClassEntry(entry.getName())) {
+                        addAnalyzed(addClassDeps(readFully(jarFile.getInputStream(entry)), deps), analyzed);
+                    }
+                }
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+    }
+
+    private static void addAnalyzed(String className, Set<String> analyzed) {
+        if (analyzed != null && className != null) {
+            analyzed.add(className);
+        }
+    }
+
+    private static boolean isClassEntry(String name) {
+        return name.endsWith(CLASS_EXTENSION) && !name.startsWith(META_INF) && !name.endsWith(MODULE_INFO);
+    }
+
+    private static Set<String> getDependencies(ClassReader reader) {
+        Set<String> types = new HashSet<>();
+        char[] buf = new char[reader.getMaxStringLength()];
+        for (int i = 1; i < reader.getItemCount(); i++) {
+            int index = reader.getItem(i);
+            if (index == 0) {
+                // the second slot taken by a long or a double constant
+                continue;
+            }
+            switch (reader.readByte(index - 1)) {
+                case CONSTANT_CLASS:
+                    addInternalName(reader.readUTF8(index, buf), types);
+                    break;
+                case CONSTANT_NAME_AND_TYPE:
+                    addDescriptor(reader.readUTF8(index + 2, buf), types);
+                    break;
+                case CONSTANT_METHOD_TYPE:
+                    addDescriptor(reader.readUTF8(index, buf), types);
+                    break;
+                default:
+                    break;
+            }
+        }
+        // descriptors and signatures of declared members are not always referenced from the constant pool
+        reader.accept(new DependencyVisitor(types), PARSING_OPTIONS);
+        return types;
+    }
+
+    private static void addInternalName(String name, Set<String> types) {
+        if (name.startsWith("[")) {
+            addDescriptor(name, types);
+        } else {
+            types.add(toFQN(name));
+        }
+    }
+
+    private static void addDescriptor(String desc, Set<String> types) {
+        int index = desc.indexOf('L');
+        while (index >= 0) {
+            int end = desc.indexOf(';', index);
+            if (end < 0) {
+                return;
+            }
+            types.add(toFQN(desc.substring(index + 1, end)));
+            index = desc.indexOf('L', end);
+        }
+    }
+
+    private static AnnotationVisitor addAnnotation(String desc, boolean visible, Set<String> types) {
+        if (visible) {
+            addDescriptor(desc, types);
+        }
+        return null;
+    }
+
+    private static void addSignature(String signature, Set<String> types, boolean collectBounds) {
+        if (signature == null) {
+            return;
+        }
+        try {
+            new SignatureScanner(signature, types, collectBounds).scan();
+        } catch (IndexOutOfBoundsException ioobe) {
+            LOGGER.log(Level.FINEST, "@@MalformedSignature: " + signature);
+        }
+    }
+
+    private static String toFQN(String internalName) {
+        return internalName.replace('/', '.');
+    }
+
+    static byte[] readFully(InputStream is) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int size = is.read(buffer);
+            while (size >= 0) {
+                out.write(buffer, 0, size);
+                size = is.read(buffer);
+            }
+            return out.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Collects the types that appear in member descriptors, generic signatures, and runtime-visible
+     * annotations. Like jdeps, we ignore annotations that are not retained at runtime.
+     */
+    private static class DependencyVisitor extends ClassVisitor {
+        private final Set<String> types;
+        private final FieldVisitor fieldVisitor;
+        private final MethodVisitor methodVisitor;
+
+        DependencyVisitor(final Set<String> types) {
+            super(Opcodes.ASM5);
+            this.types = types;
+            this.fieldVisitor = new FieldVisitor(Opcodes.ASM5) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    return addAnnotation(desc, visible, types);
+                }
+            };
+            this.methodVisitor = new MethodVisitor(Opcodes.ASM5) {
+                @Override
+                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+                    return addAnnotation(desc, visible, types);
+                }
+
+                @Override
+                public AnnotationVisitor visitParameterAnnotation(int parameter, String desc, boolean visible) {
+                    return addAnnotation(desc, visible, types);
+                }
+            };
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            addSignature(signature, types, false);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            return addAnnotation(desc, visible, types);
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+            addDescriptor(desc, types);
+            addSignature(signature, types, false);
+            return fieldVisitor;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                                         String[] exceptions) {
+            addDescriptor(desc, types);
+            addSignature(signature, types, true);
+            return methodVisitor;
+        }
+    }
+
+    /**
+     * Collects the class types that appear in a generic signature, skipping the names of type variables.
+     * Like jdeps, we skip the bounds of the formal type parameters of a class, but not of a method.
+     */
+    private static class SignatureScanner {
+        private final String signature;
+        private final Set<String> types;
+        private int pos;
+        private final boolean collectBounds;
+        private boolean collect = true;
+
+        SignatureScanner(String signature, Set<String> types, boolean collectBounds) {
+            this.signature = signature;
+            this.types = types;
+            this.collectBounds = collectBounds;
+        }
+
+        void scan() {
+            if (peek() == '<') {
+                scanFormalTypeParameters();
+            }
+            while (pos < signature.length()) {
+                scanTypeSignature();
+            }
+        }
+
+        private char peek() {
+            return signature.charAt(pos);
+        }
+
+        private void scanFormalTypeParameters() {
+            collect = collectBounds;
+            pos++;
+            while (peek() != '>') {
+                pos = signature.indexOf(':', pos);
+                while (peek() == ':') {
+                    pos++;
+                    if (peek() != ':' && peek() != '>') {
+                        scanTypeSignature();
+                    }
+                }
+            }
+            pos++;
+            collect = true;
+        }
+
+        private void scanTypeSignature() {
+            switch (peek()) {
+                case 'L':
+                    scanClassTypeSignature();
+                    break;
+                case 'T':
+                    pos = signature.indexOf(';', pos) + 1;
+                    break;
+                default:
+                    // array dimensions, primitive types, and the parentheses and carets of method signatures
+                    pos++;
+                    break;
+            }
+        }
+
+        private void scanClassTypeSignature() {
+            pos++;
+            String name = readIdentifier();
+            addType(name);
+            while (true) {
+                char next = signature.charAt(pos++);
+                if (next == ';') {
+                    return;
+                } else if (next == '.') {
+                    name = name + "$" + readIdentifier();
+                    addType(name);
+                } else if (next == '<') {
+                    while (peek() != '>') {
+                        if (peek() == '+' || peek() == '-' || peek() == '*') {
+                            pos++;
+                        } else {
+                            scanTypeSignature();
+                        }
+                    }
+                    pos++;
+                }
+            }
+        }
+
+        private void addType(String internalName) {
+            if (collect) {
+                types.add(toFQN(internalName));
+            }
+        }
+
+        private String readIdentifier() {
+            int start = pos;
+            while ("<.;".indexOf(peek()) < 0) {
+                pos++;
+            }
+            return signature.substring(start, pos);
+        }
+    }
+
+    /**
+     * Finds the bytecode of classes on a classpath, in classpath order.
+     */
+    private static class ClassPathLookup {
+        private final List<String> classPath;
+        private final Map<String, JarFile> jars = new HashMap<>();
+
+        ClassPathLookup(List<String> classPath) {
+            this.classPath = classPath;
+        }
+
+        byte[] find(String className) {
+            String entryName = className.replace(DOT, "/") + CLASS_EXTENSION;
+            for (String path : classPath) {
+                try {
+                    if (path.endsWith(JAR_EXTENSION)) {
+                        JarFile jarFile = getJarFile(path);
+                        JarEntry entry = jarFile == null ? null : jarFile.getJarEntry(entryName);
+                        if (entry != null) {
+                            return readFully(jarFile.getInputStream(entry));
+                        }
+                    } else {
+                        File classFile = new File(path, entryName);
+                        if (classFile.isFile()) {
+                            return Files.readAllBytes(classFile.toPath());
+                        }
+                    }
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+            }
+            return null;
+        }
+
+        private JarFile getJarFile(String path) throws IOException {
+            if (!jars.containsKey(path)) {
+                jars.put(path, new File(path).isFile() ? new JarFile(path) : null);
+            }
+            return jars.get(path);
+        }
+
+        void close() {
+            for (JarFile jarFile : jars.values()) {
+                try {
+                    if (jarFile != null) {
+                        jarFile.close();
+                    }
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -4,37 +4,90 @@
 
 package edu.illinois.starts.helpers;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
 import java.util.logging.Level;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
 import edu.illinois.starts.util.Logger;
+import org.apache.commons.codec.digest.DigestUtils;
 
 /** Utility methods for dealing with cached files. */
 
 public class Cache implements StartsConstants {
     private static final Logger LOGGER = Logger.getGlobal();
     private static final String GRAPH_EXTENSION = ".graph";
+    private static final String DIGEST_INDEX = "jar-digests";
+    private static final String CLASS_INDEX_DIR = "class-index";
 
     File jdepsCache;
     String m2Repo;
 
     private Set<String> cpJars;
+    private Set<String> jarsInCache;
+    private int parallelism = 1;
+    // the digest, size and modification time of each jar, by path
+    private Map<String, String[]> digests;
+    private boolean digestsChanged;
 
     public Cache(File jdepsCache, String m2Repo) {
         this.jdepsCache = jdepsCache;
         this.m2Repo = m2Repo;
     }
 
-    public List<String> loadM2EdgesFromCache(String pathString) {
+    public Cache(File jdepsCache, String m2Repo, int parallelism) {
+        this(jdepsCache, m2Repo);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Add the cached edges of all jars on the classpath to the builder, creating the missing cache files first.
+     *
+     * @param pathString The classpath
+     * @param builder    The builder to which we add the edges
+     */
+    public void loadM2EdgesFromCache(String pathString, DependencyGraph.Builder builder) {
+        loadCachedEdges(findOrCreateGraphs(pathString), builder);
+    }
+
+    /**
+     * Make sure that the cache has a graph for every jar on the classpath, running jdeps on the jars that
+     * do not have one yet.
+     *
+     * @param pathString The classpath
+     * @return The jars (or, for standard library jars, the names of the graphs) whose graphs are in the cache
+     */
+    public Set<String> findOrCreateGraphs(String pathString) {
+        if (jarsInCache != null) {
+            return jarsInCache;
+        }
         if (!jdepsCache.exists()) {
             if (!jdepsCache.mkdir()) {
                 throw new RuntimeException("I could not create the jdeps cache: " + jdepsCache.getAbsolutePath());
@@ -43,13 +96,85 @@ public class Cache implements StartsConstants {
         //1. get jars from sfClassPath
         cpJars = getJarsFromCP(pathString);
         //2. get the edges for the jars from jdepsCache (if they are in jdepsCache and add them to moreEdges
-        Set<String> jarsInCache = getJarsInGraphCache(cpJars);
-        HashSet<String> missing = getJarsMissingFromCache(jarsInCache);
+        Set<String> inCache = getJarsInGraphCache(cpJars);
+        HashSet<String> missing = getJarsMissingFromCache(inCache);
         // Some projects depend directly on jars in the standard library, so
         // we want to check there as well
-        jarsInCache.addAll(checkMissingJarsInJDKCache(missing));
-        return loadCachedEdges(jarsInCache);
+        inCache.addAll(checkMissingJarsInJDKCache(missing));
+        saveDigestIndex();
+        jarsInCache = inCache;
+        return jarsInCache;
+    }
 
+    /**
+     * Add to the builder only the cached edges of the library classes that the given classes can reach.
+     * Starting from the given classes and their dependencies, the graph of a jar is loaded the first time
+     * that the traversal reaches a class that the jar provides, so jars that no project class uses, directly
+     * or through other jars, are never read. The jar that provides each class comes from an index of the
+     * classpath, which is built once per classpath and stored in the cache.
+     *
+     * @param pathString The classpath
+     * @param roots      The dependencies of the project classes
+     * @param builder    The builder to which we add the edges
+     */
+    public void loadReachableM2EdgesFromCache(String pathString, Map<String, Set<String>> roots,
+                                              DependencyGraph.Builder builder) {
+        long start = System.currentTimeMillis();
+        findOrCreateGraphs(pathString);
+        Map<String, List<String>> classToJars = getClassIndex();
+        long indexTime = System.currentTimeMillis();
+        final Map<String, List<String>> loadedEdges = new HashMap<>();
+        Set<String> loadedJars = new HashSet<>();
+        Set<String> visited = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        for (Map.Entry<String, Set<String>> entry : roots.entrySet()) {
+            visit(entry.getKey(), visited, queue);
+            for (String dep : entry.getValue()) {
+                visit(dep, visited, queue);
+            }
+        }
+        final DependencyGraph.Builder graphBuilder = builder;
+        while (!queue.isEmpty()) {
+            String klass = queue.poll();
+            List<String> jars = classToJars.get(klass);
+            if (jars != null) {
+                for (String jar : jars) {
+                    if (loadedJars.add(jar)) {
+                        readCachedEdges(jar, new BiConsumer<String, String>() {
+                            @Override
+                            public void accept(String source, String target) {
+                                graphBuilder.addEdge(source, target);
+                                List<String> targets = loadedEdges.get(source);
+                                if (targets == null) {
+                                    targets = new ArrayList<>();
+                                    loadedEdges.put(source, targets);
+                                }
+                                targets.add(target);
+                            }
+                        });
+                    }
+                }
+            }
+            List<String> targets = loadedEdges.get(klass);
+            if (targets != null) {
+                for (String target : targets) {
+                    visit(target, visited, queue);
+                }
+            }
+        }
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINEST, "@@LoadedReachableEdgesFromJars: " + loadedJars.size() + " of " + cpJars.size()
+                + " jars, " + builder.getEdgeCount() + " edges");
+        LOGGER.log(Level.FINE, "[PROFILE] loadReachableM2EdgesFromCache(classIndex): "
+                + Writer.millsToSeconds(indexTime - start));
+        LOGGER.log(Level.FINE, "[PROFILE] loadReachableM2EdgesFromCache(TOTAL): "
+                + Writer.millsToSeconds(end - start));
+    }
+
+    private static void visit(String klass, Set<String> visited, Deque<String> queue) {
+        if (visited.add(klass)) {
+            queue.add(klass);
+        }
     }
 
     private HashSet<String> getJarsMissingFromCache(Set<String> jarsInCache) {
@@ -74,13 +199,8 @@ public class Cache implements StartsConstants {
                 notFound.add(jar);
             }
         }
-        List<String> newlyCreated = new ArrayList<>();
-        for (String jar : notFound) {
-            //1. parse with jdeps and store in the cache
-            List<String> args = new ArrayList<>(Arrays.asList("-v", jar));
-            Writer.writeDepsToFile(RTSUtil.runJdeps(args), createCacheFile(jar).getAbsolutePath());
-            newlyCreated.add(jar);
-        }
+        //1. parse with jdeps and store in the cache
+        List<String> newlyCreated = createCacheFiles(new ArrayList<>(notFound));
         //2. add newly-created graphs to list of jars that were previously found in cache
         found.addAll(newlyCreated);
         //3. remove newly-created graphs from list of jars that were not found
@@ -91,20 +211,217 @@ public class Cache implements StartsConstants {
         return found;
     }
 
-    private List<String> loadCachedEdges(Set<String> jarsInCache) {
-        List<String> edges = new ArrayList<>();
+    /**
+     * Run jdeps on each jar and store a summary of its graph in the cache (see JarGraphSummary). With
+     * parallelism greater than one, the jars are analyzed on a fixed pool of threads. Every graph file is
+     * written atomically, so a concurrent build that shares the cache either sees the whole file or no file.
+     *
+     * @return The jars whose graphs were created
+     */
+    private List<String> createCacheFiles(List<String> jars) {
+        long start = System.currentTimeMillis();
+        List<String> created = new ArrayList<>();
+        if (parallelism <= 1 || jars.size() < 2) {
+            for (String jar : jars) {
+                created.add(createCacheFileWithJdeps(jar));
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, jars.size()));
+            try {
+                List<Future<String>> futures = new ArrayList<>();
+                for (final String jar : jars) {
+                    futures.add(executor.submit(new Callable<String>() {
+                        @Override
+                        public String call() {
+                            return createCacheFileWithJdeps(jar);
+                        }
+                    }));
+                }
+                for (Future<String> future : futures) {
+                    created.add(future.get());
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ie);
+            } catch (ExecutionException ee) {
+                throw new RuntimeException(ee.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "[PROFILE] createCacheFiles(" + jars.size() + " jars): "
+                + Writer.millsToSeconds(end - start));
+        return created;
+    }
+
+    private String createCacheFileWithJdeps(String jar) {
+        List<String> args = new ArrayList<>(Arrays.asList("-v", jar));
+        Map<String, Set<String>> deps = RTSUtil.runJdeps(args);
+        Map<String, Set<String>> summary = JarGraphSummary.summarize(deps);
+        LOGGER.log(Level.FINEST, "@@SummarizedJarGraph: " + jar + " " + countEdges(deps) + " -> " + countEdges(summary));
+        try {
+            JarGraphFile.write(summary, createCacheFile(jar));
+        } catch (IOException ioe) {
+            throw new RuntimeException("I could not write the jdeps graph of " + jar, ioe);
+        }
+        return jar;
+    }
+
+    private static int countEdges(Map<String, Set<String>> deps) {
+        int count = 0;
+        for (Set<String> targets : deps.values()) {
+            count += targets.size();
+        }
+        return count;
+    }
+
+    private void loadCachedEdges(Set<String> jarsInCache, DependencyGraph.Builder builder) {
         for (String jar : jarsInCache) {
             File cacheFile = createCacheFile(jar);
             LOGGER.log(Level.FINEST, "@@LoadingFromNormalCache: " + cacheFile.getAbsolutePath());
-            try {
-                List<String> lines = Files.readAllLines(cacheFile.toPath(), Charset.defaultCharset());
-                edges.addAll(lines);
+            if (JarGraphFile.isBinary(cacheFile)) {
+                try {
+                    JarGraphFile.addEdgesToGraphBuilder(cacheFile, builder);
+                } catch (IOException ioe) {
+                    ioe.printStackTrace();
+                }
+                continue;
+            }
+            // graphs in the text format, e.g., the graphs of standard library jars that we do not create
+            try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), Charset.defaultCharset())) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Loadables.addEdgeToGraphBuilder(builder, line);
+                }
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+        LOGGER.log(Level.FINEST, "@@LoadedCachedEdgesFromJars: " + builder.getEdgeCount());
+    }
+
+    /**
+     * Pass every cached edge of a jar on the classpath to the consumer. Like loadM2EdgesFromCache, we fall
+     * back to the graph of a standard library jar with the same file name.
+     */
+    private void readCachedEdges(String jar, BiConsumer<String, String> edgeConsumer) {
+        File cacheFile = createCacheFile(jar);
+        if (!cacheFile.exists()) {
+            cacheFile = new File(jdepsCache, new File(jar).getName().replace(JAR_EXTENSION, GRAPH_EXTENSION));
+        }
+        LOGGER.log(Level.FINEST, "@@LoadingFromNormalCache: " + cacheFile.getAbsolutePath());
+        try {
+            if (JarGraphFile.isBinary(cacheFile)) {
+                JarGraphFile.readEdges(cacheFile, edgeConsumer);
+                return;
+            }
+            try (BufferedReader reader = Files.newBufferedReader(cacheFile.toPath(), Charset.defaultCharset())) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] edge = line.split(WHITE_SPACE);
+                    if (edge.length == 2) {
+                        edgeConsumer.accept(edge[0], edge[1]);
+                    } else {
+                        LOGGER.log(Level.SEVERE, "@@BrokenEdge: " + line);
+                    }
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the jars that provide each class on the classpath. The index is keyed by the digests of the
+     * jars, so it is only built again, by listing the entries of every jar, when the classpath changes.
+     */
+    private Map<String, List<String>> getClassIndex() {
+        List<String> jars = new ArrayList<>(cpJars);
+        Collections.sort(jars);
+        Map<String, String> jarByDigest = new HashMap<>();
+        StringBuilder key = new StringBuilder();
+        for (String jar : jars) {
+            String digest = getDigest(jar);
+            if (digest == null) {
+                digest = jar;
+            }
+            jarByDigest.put(digest, jar);
+            key.append(digest).append(System.lineSeparator());
+        }
+        File indexFile = new File(new File(jdepsCache, CLASS_INDEX_DIR), DigestUtils.md5Hex(key.toString()));
+        Map<String, List<String>> index = new HashMap<>();
+        if (indexFile.exists()) {
+            try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // "digest class"
+                    int space = line.lastIndexOf(' ');
+                    String jar = jarByDigest.get(line.substring(0, space));
+                    if (jar != null) {
+                        addToIndex(index, line.substring(space + 1), jar);
+                    }
+                }
+                return index;
             } catch (IOException ioe) {
                 ioe.printStackTrace();
+                index.clear();
+            }
+        }
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, String> entry : jarByDigest.entrySet()) {
+            for (String klass : listClasses(entry.getValue())) {
+                addToIndex(index, klass, entry.getValue());
+                lines.add(entry.getKey() + WHITE_SPACE + klass);
+            }
+        }
+        saveClassIndex(indexFile, lines);
+        return index;
+    }
+
+    private static void addToIndex(Map<String, List<String>> index, String klass, String jar) {
+        List<String> jars = index.get(klass);
+        if (jars == null) {
+            jars = new ArrayList<>(1);
+            index.put(klass, jars);
+        }
+        jars.add(jar);
+    }
+
+    static List<String> listClasses(String jar) {
+        List<String> classes = new ArrayList<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.endsWith(CLASS_EXTENSION) && !name.startsWith("META-INF/")) {
+                    classes.add(name.substring(0, name.length() - CLASS_EXTENSION.length()).replace('/', '.'));
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        return classes;
+    }
+
+    /**
+     * Save a class index. Like the digest index, it is replaced atomically, and failing to write it is not
+     * an error.
+     */
+    private void saveClassIndex(File indexFile, List<String> lines) {
+        Path temp = null;
+        try {
+            Files.createDirectories(indexFile.getParentFile().toPath());
+            temp = Files.createTempFile(indexFile.getParentFile().toPath(), indexFile.getName(), ".tmp");
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Writer.moveAtomically(temp, indexFile.toPath());
+        } catch (IOException ioe) {
+            LOGGER.log(Level.FINE, "Could not save the class index: " + ioe.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.toFile().delete();
             }
         }
-        LOGGER.log(Level.FINEST, "@@LoadedCachedEdgesFromJars: ");
-        return edges;
     }
 
     private Set<String> getJarsInGraphCache(Set<String> cpJars) {
@@ -118,11 +435,104 @@ public class Cache implements StartsConstants {
         return inCache;
     }
 
+    /**
+     * Get the cache file for a jar. The graph of a jar is stored under the MD5 digest of its content, so the
+     * same jar is only analyzed once, wherever it is, and a jar that is replaced under the same path gets
+     * a new graph. Graphs of standard library jars, which are looked up by file name, and jars whose digest
+     * we cannot compute, are stored under their path relative to m2Repo.
+     */
     private File createCacheFile(String jar) {
+        String digest = jar.endsWith(JAR_EXTENSION) ? getDigest(jar) : null;
+        if (digest != null) {
+            return new File(jdepsCache, digest + GRAPH_EXTENSION);
+        }
         String cachePath = jar.replace(m2Repo + File.separator, EMPTY).replace(JAR_EXTENSION, GRAPH_EXTENSION);
         return new File(jdepsCache, cachePath);
     }
 
+    /**
+     * Get the MD5 digest of a jar. Digests are stored in an index in the cache, with the size and the
+     * modification time that the jar had before we hashed it, and we only hash a jar again when either
+     * changed. Like JarChecksums, we do not record a jar that was modified too recently, as it could be
+     * replaced again within the same timestamp granularity.
+     *
+     * @return The digest, or null if the jar cannot be read
+     */
+    private String getDigest(String jar) {
+        if (digests == null) {
+            digests = loadDigestIndex();
+        }
+        File jarFile = new File(jar);
+        long length = jarFile.length();
+        long lastModified = jarFile.lastModified();
+        String[] entry = digests.get(jar);
+        if (entry != null && entry[1].equals(String.valueOf(length))
+                && entry[2].equals(String.valueOf(lastModified))) {
+            return entry[0];
+        }
+        String digest = Writer.getJarToChecksumMapping(jar).getValue();
+        if (digest.equals("-1")) {
+            return null;
+        }
+        if (lastModified != 0 && System.currentTimeMillis() - lastModified >= ZLCStatIndex.RACY_WINDOW_MS) {
+            digests.put(jar, new String[] {digest, String.valueOf(length), String.valueOf(lastModified)});
+            digestsChanged = true;
+        }
+        return digest;
+    }
+
+    private Map<String, String[]> loadDigestIndex() {
+        Map<String, String[]> index = new ConcurrentHashMap<>();
+        File indexFile = new File(jdepsCache, DIGEST_INDEX);
+        if (!indexFile.exists()) {
+            return index;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // "digest size mtime path"; the path comes last because it may contain spaces
+                String[] parts = line.split(WHITE_SPACE, 4);
+                if (parts.length == 4) {
+                    index.put(parts[3], new String[] {parts[0], parts[1], parts[2]});
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            index.clear();
+        }
+        return index;
+    }
+
+    /**
+     * Save the digest index if we added to it. The cache may be shared by several builds, or be read-only,
+     * so the index is replaced atomically, and failing to write it is not an error.
+     */
+    private void saveDigestIndex() {
+        if (!digestsChanged) {
+            return;
+        }
+        Path indexFile = new File(jdepsCache, DIGEST_INDEX).toPath();
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(jdepsCache.toPath(), DIGEST_INDEX, ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, String[]> entry : digests.entrySet()) {
+                    String[] digest = entry.getValue();
+                    writer.write(digest[0] + WHITE_SPACE + digest[1] + WHITE_SPACE + digest[2] + WHITE_SPACE
+                            + entry.getKey() + System.lineSeparator());
+                }
+            }
+            Writer.moveAtomically(temp, indexFile);
+            digestsChanged = false;
+        } catch (IOException ioe) {
+            LOGGER.log(Level.FINE, "Could not save the jar digest index: " + ioe.getMessage());
+        } finally {
+            if (temp != null) {
+                temp.toFile().delete();
+            }
+        }
+    }
+
     private Set<String> getJarsFromCP(String sfPathString) {
         if (cpJars != null) {
             return cpJars;
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.ChecksumUtil;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Persists the outgoing class-level dependencies of every local class, keyed by the checksum
+ * of its .class file, so that we only need to re-extract the dependencies of the classes that
+ * changed since the last run. Each line of the store has the form "class checksum dep1,dep2,..."
+ * and the first line records the settings with which the dependencies were extracted.
+ */
+public class ClassDepsStore implements StartsConstants {
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static final String MODULE_INFO = "module-info" + CLASS_EXTENSION;
+
+    private String storePath;
+    private String settings;
+    private Map<String, String> checksums;
+    private Map<String, Set<String>> deps;
+    private Map<String, String> currentChecksums;
+
+    public ClassDepsStore(String artifactsDir, String settings) {
+        this.storePath = Paths.get(artifactsDir, CLASS_DEPS).toString();
+        this.settings = settings;
+        this.checksums = new HashMap<>();
+        this.deps = new HashMap<>();
+        load();
+    }
+
+    /**
+     * Find the classes whose .class file was added or changed since the store was last saved,
+     * and forget the classes whose .class file was deleted.
+     *
+     * @param localPaths The directories that contain the classes whose dependencies we track
+     * @return           A map from each added or changed class to the path of its .class file
+     */
+    public Map<String, String> findChangedClasses(List<String> localPaths) {
+        Map<String, String> classFiles = listClassFiles(localPaths);
+        ChecksumUtil checksumUtil = new ChecksumUtil(true);
+        currentChecksums = new HashMap<>();
+        Map<String, String> changed = new LinkedHashMap<>();
+        for (Map.Entry<String, String> entry : classFiles.entrySet()) {
+            String className = entry.getKey();
+            String checksum;
+            try {
+                checksum = checksumUtil.computeSingleCheckSum(new File(entry.getValue()).toURI().toURL());
+            } catch (MalformedURLException murle) {
+                murle.printStackTrace();
+                checksum = null;
+            }
+            currentChecksums.put(className, checksum);
+            if (checksum == null || !checksum.equals(checksums.get(className))) {
+                changed.put(className, entry.getValue());
+            }
+        }
+        Set<String> deleted = new HashSet<>(checksums.keySet());
+        deleted.removeAll(classFiles.keySet());
+        for (String className : deleted) {
+            checksums.remove(className);
+            deps.remove(className);
+        }
+        LOGGER.log(Level.FINEST, "CLASS-DEPS-STORE: " + classFiles.size() + " classes, " + changed.size()
+                + " changed, " + deleted.size() + " deleted");
+        return changed;
+    }
+
+    /**
+     * Record the freshly extracted dependencies of the classes that changed. A changed class that
+     * has no entry in newDeps has no dependencies (after filtering).
+     *
+     * @param changed The classes returned by findChangedClasses
+     * @param newDeps The dependencies that were extracted for (at least) the changed classes
+     */
+    public void update(Set<String> changed, Map<String, Set<String>> newDeps) {
+        for (String className : changed) {
+            Set<String> classDeps = newDeps.get(className);
+            deps.put(className, classDeps == null ? new HashSet<String>() : classDeps);
+            checksums.put(className, currentChecksums.get(className));
+        }
+    }
+
+    /**
+     * Get the dependency map in the same shape as the one we get from jdeps, i.e., classes
+     * without any dependency do not have an entry.
+     */
+    public Map<String, Set<String>> getDepMap() {
+        Map<String, Set<String>> depMap = new HashMap<>();
+        for (Map.Entry<String, Set<String>> entry : deps.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                depMap.put(entry.getKey(), new HashSet<>(entry.getValue()));
+            }
+        }
+        return depMap;
+    }
+
+    public boolean isEmpty() {
+        return checksums.isEmpty();
+    }
+
+    public void save() {
+        try (BufferedWriter writer = Writer.getWriter(storePath)) {
+            writer.write(settings + System.lineSeparator());
+            for (Map.Entry<String, String> entry : checksums.entrySet()) {
+                String className = entry.getKey();
+                if (entry.getValue() == null) {
+                    continue;
+                }
+                writer.write(className + WHITE_SPACE + entry.getValue());
+                Set<String> classDeps = deps.get(className);
+                if (classDeps != null && !classDeps.isEmpty()) {
+                    writer.write(WHITE_SPACE + String.join(COMMA, classDeps));
+                }
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    private void load() {
+        File storeFile = new File(storePath);
+        if (!storeFile.exists()) {
+            return;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(storeFile.toPath(), StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            if (!settings.equals(line)) {
+                // the dependencies were extracted with different settings, so we cannot reuse them
+                LOGGER.log(Level.FINEST, "CLASS-DEPS-STORE: settings changed from " + line + " to " + settings);
+                return;
+            }
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(WHITE_SPACE);
+                if (parts.length < 2) {
+                    continue;
+                }
+                checksums.put(parts[0], parts[1]);
+                deps.put(parts[0], parts.length > 2 ? new HashSet<>(Arrays.asList(parts[2].split(COMMA)))
+                        : new HashSet<String>());
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            checksums.clear();
+            deps.clear();
+        }
+    }
+
+    private static Map<String, String> listClassFiles(List<String> localPaths) {
+        final Map<String, String> classFiles = new LinkedHashMap<>();
+        for (String localPath : localPaths) {
+            final Path root = Paths.get(localPath);
+            if (!Files.isDirectory(root)) {
+                continue;
+            }
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        String name = file.getFileName().toString();
+                        if (name.endsWith(CLASS_EXTENSION) && !name.equals(MODULE_INFO)) {
+                            String relative = root.relativize(file).toString();
+                            String className = relative.substring(0, relative.length() - CLASS_EXTENSION.length())
+                                    .replace(File.separatorChar, '.');
+                            if (!classFiles.containsKey(className)) {
+                                classFiles.put(className, file.toString());
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+        return classFiles;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * The difference between the Surefire classpath of the last run and the current one, in terms of the jars
+ * that were added, removed or changed. A class of such a jar may now be loaded from a different place, or
+ * with different bytes, so the tests that reach a class with the same name may be affected.
+ *
+ * <p>Some changes cannot be attributed to jars; the diff is then not attributable, and all tests must run:
+ * <ul>
+ * <li>there is no sf-classpath or jar-checksums file from the last run,</li>
+ * <li>elements that are on both classpaths are in a different order, which may change which of them
+ * shadows a class that is in more than one of them, or</li>
+ * <li>an element that is not a jar (e.g., a directory) was added, removed or changed.</li>
+ * </ul>
+ *
+ * <p>For a jar that changed in place, we only consider the classes that changed in it if the jar was hashed
+ * by its entries in both runs (see JarIndex), and all its classes otherwise.
+ *
+ * <p>A removed jar that no longer exists on disk has no classes to list. That is fine: the rows of deps.zlc
+ * for its classes point into it, so their checksums can no longer be computed and they count as changed.
+ */
+public class ClassPathDiff implements StartsConstants {
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    private final boolean attributable;
+    private final List<String> changedJars;
+    private final Set<String> changedClasses;
+
+    private ClassPathDiff(boolean attributable, List<String> changedJars, Set<String> changedClasses) {
+        this.attributable = attributable;
+        this.changedJars = changedJars;
+        this.changedClasses = changedClasses;
+    }
+
+    /**
+     * Diff the classpath and the jar checksums of the last run with the current ones.
+     *
+     * @param oldPaths     The elements of the last classpath, or null if there is none
+     * @param oldChecksums The checksums of the last run, or null if there are none
+     */
+    public static ClassPathDiff compute(List<String> oldPaths, JarChecksums oldChecksums, List<String> newPaths,
+                                        JarChecksums newChecksums) {
+        if (oldPaths == null || oldChecksums == null) {
+            return notAttributable("there is no classpath from the last run");
+        }
+        Set<String> oldSet = new HashSet<>(oldPaths);
+        Set<String> newSet = new HashSet<>(newPaths);
+        if (!retained(oldPaths, newSet).equals(retained(newPaths, oldSet))) {
+            return notAttributable("classpath elements were reordered");
+        }
+        List<String> changedJars = new ArrayList<>();
+        for (String path : newPaths) {
+            boolean changed = !oldSet.contains(path) || !sameChecksum(path, oldChecksums, newChecksums);
+            if (changed && !path.endsWith(JAR_EXTENSION)) {
+                return notAttributable(path + " is not a jar");
+            } else if (changed) {
+                changedJars.add(path);
+            }
+        }
+        for (String path : oldPaths) {
+            if (newSet.contains(path)) {
+                continue;
+            } else if (!path.endsWith(JAR_EXTENSION)) {
+                return notAttributable(path + " is not a jar");
+            } else if (new File(path).exists()) {
+                changedJars.add(path);
+            }
+        }
+        Set<String> changedClasses = new HashSet<>();
+        for (String jar : changedJars) {
+            Set<String> classes = null;
+            if (oldSet.contains(jar) && newSet.contains(jar)) {
+                classes = getChangedClassesInJar(jar, oldChecksums, newChecksums);
+            }
+            changedClasses.addAll(classes == null ? Cache.listClasses(jar) : classes);
+        }
+        LOGGER.log(Level.FINE, "Classpath diff: " + changedJars.size() + " jars with " + changedClasses.size()
+                + " classes changed");
+        return new ClassPathDiff(true, changedJars, changedClasses);
+    }
+
+    private static ClassPathDiff notAttributable(String reason) {
+        LOGGER.log(Level.FINE, "Classpath diff: cannot attribute the change to jars; " + reason);
+        return new ClassPathDiff(false, new ArrayList<String>(), new HashSet<String>());
+    }
+
+    /**
+     * Compare the indexes of a jar that changed in place, if it was hashed by its entries in both runs.
+     *
+     * @return The classes that changed in the jar, or null if we need to consider all its classes
+     */
+    private static Set<String> getChangedClassesInJar(String jar, JarChecksums oldChecksums,
+                                                      JarChecksums newChecksums) {
+        JarIndex oldIndex = oldChecksums.getIndex(jar);
+        JarIndex newIndex = newChecksums.getIndex(jar);
+        return oldIndex == null || newIndex == null ? null : newIndex.getChangedClasses(oldIndex);
+    }
+
+    private static List<String> retained(List<String> paths, Set<String> others) {
+        List<String> retained = new ArrayList<>();
+        for (String path : paths) {
+            if (others.contains(path)) {
+                retained.add(path);
+            }
+        }
+        return retained;
+    }
+
+    private static boolean sameChecksum(String path, JarChecksums oldChecksums, JarChecksums newChecksums) {
+        String oldChecksum = oldChecksums.getChecksum(path);
+        return oldChecksum != null && oldChecksum.equals(newChecksums.getChecksum(path));
+    }
+
+    /**
+     * Whether every change of the classpath is attributed to the jars in getChangedJars().
+     */
+    public boolean isAttributable() {
+        return attributable;
+    }
+
+    /**
+     * The jars that were added, changed, or removed (if they still exist).
+     */
+    public List<String> getChangedJars() {
+        return changedJars;
+    }
+
+    /**
+     * The names of the classes in the changed jars.
+     */
+    public Set<String> getChangedClasses() {
+        return changedClasses;
+    }
+}
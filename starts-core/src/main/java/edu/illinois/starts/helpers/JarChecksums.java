@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * The checksums of the elements of the Surefire classpath, as stored in the jar-checksums file. Each line
+ * has the path, the checksum, and the size and modification time of the element when it was hashed, so
+ * that only elements whose size or modification time changed are hashed again. Lines without the size and
+ * modification time, from older versions of STARTS, are read as well; their elements are always hashed.
+ * Like in ZLCStatIndex, we do not record the size and modification time of an element that was modified
+ * shortly before we hashed it, as it could be modified again within the timestamp granularity without
+ * changing its size; such an element is hashed again in the next run.
+ *
+ * <p>A jar is hashed either by its bytes, or, with entry checksums, by the checksums of its entries (see
+ * JarIndex), whose index is then saved along with the checksums.
+ */
+public class JarChecksums implements StartsConstants {
+    private static final Logger LOGGER = Logger.getGlobal();
+
+    // the checksum, size and modification time of each element, in classpath order
+    private final Map<String, String[]> entries = new LinkedHashMap<>();
+    // the indexes of the jars that we hashed by their entries
+    private final Map<String, JarIndex> indexes = new ConcurrentHashMap<>();
+    // the elements that we hashed by their bytes
+    private final Set<String> unindexed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // where we read the checksums from, to read the saved indexes; null for checksums that we computed
+    private String artifactsDir;
+    private int hashed;
+
+    /**
+     * Read the checksums from the artifacts directory.
+     *
+     * @return The checksums, or null if there is no jar-checksums file
+     */
+    public static JarChecksums read(String artifactsDir) throws IOException {
+        File file = Paths.get(artifactsDir, JAR_CHECKSUMS).toFile();
+        if (!file.exists()) {
+            return null;
+        }
+        JarChecksums checksums = new JarChecksums();
+        checksums.artifactsDir = artifactsDir;
+        for (String line : Files.readAllLines(file.toPath())) {
+            String[] elems = line.split(COMMA);
+            if (elems.length == 4) {
+                checksums.entries.put(elems[0], new String[] {elems[1], elems[2], elems[3]});
+            } else if (elems.length >= 2) {
+                checksums.entries.put(elems[0], new String[] {elems[1]});
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Compute the checksums of the given classpath elements. An element whose size and modification time
+     * are the same as in old keeps its old checksum; the others are hashed, on a fixed pool of threads if
+     * parallelism is greater than one.
+     *
+     * @param old The checksums of the last run, or null to hash every element
+     */
+    public static JarChecksums compute(List<String> paths, JarChecksums old, int parallelism) {
+        return compute(paths, old, parallelism, false, true);
+    }
+
+    /**
+     * Like compute, but with entryChecksums, jars are hashed by the checksums of their entries, where the
+     * .class entries are hashed with cleanBytes, if set.
+     */
+    public static JarChecksums compute(List<String> paths, JarChecksums old, int parallelism,
+                                       final boolean entryChecksums, final boolean cleanBytes) {
+        long start = System.currentTimeMillis();
+        final JarChecksums checksums = new JarChecksums();
+        List<String> toHash = new ArrayList<>();
+        for (String path : paths) {
+            if (path.isEmpty()) {
+                continue;
+            }
+            String[] metadata = getMetadata(path);
+            String[] oldEntry = old == null ? null : old.entries.get(path);
+            if (oldEntry != null && oldEntry.length == 3 && oldEntry[1].equals(metadata[0])
+                    && oldEntry[2].equals(metadata[1])) {
+                checksums.entries.put(path, oldEntry);
+            } else {
+                // keep the classpath order; the checksum is filled in below
+                checksums.entries.put(path, null);
+                toHash.add(path);
+            }
+        }
+        if (parallelism <= 1 || toHash.size() < 2) {
+            for (String path : toHash) {
+                checksums.entries.put(path, checksums.hash(path, entryChecksums, cleanBytes));
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, toHash.size()));
+            try {
+                List<Future<String[]>> futures = new ArrayList<>();
+                for (final String path : toHash) {
+                    futures.add(executor.submit(new Callable<String[]>() {
+                        @Override
+                        public String[] call() {
+                            return checksums.hash(path, entryChecksums, cleanBytes);
+                        }
+                    }));
+                }
+                for (int i = 0; i < toHash.size(); i++) {
+                    checksums.entries.put(toHash.get(i), futures.get(i).get());
+                }
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ie);
+            } catch (ExecutionException ee) {
+                throw new RuntimeException(ee.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        checksums.hashed = toHash.size();
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "[PROFILE] computeJarChecksums(" + toHash.size() + " of " + paths.size()
+                + " hashed): " + Writer.millsToSeconds(end - start));
+        return checksums;
+    }
+
+    /**
+     * Get the checksum of a classpath element.
+     *
+     * @return The checksum, "-1" if the element could not be hashed, or null if it is not in the checksums
+     */
+    public String getChecksum(String path) {
+        String[] entry = entries.get(path);
+        return entry == null ? null : entry[0];
+    }
+
+    /**
+     * Whether some element was hashed when these checksums were computed, i.e., whether they have changed
+     * since they were read, if only in the size or modification time of an element.
+     */
+    public boolean hasHashed() {
+        return hashed > 0;
+    }
+
+    /**
+     * Get the index of a jar that was hashed by its entries, either when these checksums were computed, or
+     * in the run that saved them.
+     *
+     * @return The index, or null if there is none
+     */
+    public JarIndex getIndex(String path) {
+        JarIndex index = indexes.get(path);
+        if (index == null && artifactsDir != null) {
+            index = JarIndex.read(artifactsDir, path);
+        }
+        return index;
+    }
+
+    public void write(String artifactsDir) {
+        for (Map.Entry<String, JarIndex> index : indexes.entrySet()) {
+            index.getValue().write(artifactsDir, index.getKey());
+        }
+        List<String> keep = new ArrayList<>(entries.keySet());
+        keep.removeAll(unindexed);
+        JarIndex.deleteOthers(artifactsDir, keep);
+        String outFilename = Paths.get(artifactsDir, JAR_CHECKSUMS).toString();
+        try (BufferedWriter writer = Writer.getWriter(outFilename)) {
+            for (Map.Entry<String, String[]> entry : entries.entrySet()) {
+                writer.write(entry.getKey());
+                for (String value : entry.getValue()) {
+                    writer.write(COMMA + value);
+                }
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    private static String[] getMetadata(String path) {
+        File file = new File(path);
+        return new String[] {String.valueOf(file.length()), String.valueOf(file.lastModified())};
+    }
+
+    /**
+     * Hash an element, taking its size and modification time before reading it, so that a change while we
+     * read it is found in the next run.
+     */
+    private String[] hash(String path, boolean entryChecksums, boolean cleanBytes) {
+        String[] metadata = getMetadata(path);
+        if (entryChecksums && path.endsWith(JAR_EXTENSION)) {
+            try {
+                JarIndex index = JarIndex.compute(path, cleanBytes);
+                indexes.put(path, index);
+                return withMetadata(index.getChecksum(), metadata);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+        }
+        // an index that was saved earlier would no longer match the checksum
+        indexes.remove(path);
+        unindexed.add(path);
+        return withMetadata(Writer.getJarToChecksumMapping(path).getValue(), metadata);
+    }
+
+    private static String[] withMetadata(String checksum, String[] metadata) {
+        long lastModified = Long.parseLong(metadata[1]);
+        if (lastModified == 0 || System.currentTimeMillis() - lastModified < ZLCStatIndex.RACY_WINDOW_MS) {
+            return new String[] {checksum};
+        }
+        return new String[] {checksum, metadata[0], metadata[1]};
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+import edu.illinois.starts.data.DependencyGraph;
+
+/**
+ * Reads and writes the graph of a jar in the jdeps cache in a binary format. The file starts with a
+ * magic number and a version, followed by a table of the class names that the graph mentions, and the
+ * edges as pairs of indexes into that table. Names are stored as UTF-8 with a varint length, and the
+ * counts and indexes are varints.
+ *
+ * <p>The reader reads the file into memory, adds every name to the graph builder once, and then adds the
+ * edges by id, so no string is created per edge.
+ */
+public class JarGraphFile {
+    private static final byte[] MAGIC = {'S', 'J', 'G', 'B'};
+    private static final byte VERSION = 1;
+
+    private JarGraphFile() {
+    }
+
+    /**
+     * Check whether a file starts with the magic number of the binary format. Graphs in the older text
+     * format, with one "source target" edge per line, do not.
+     */
+    public static boolean isBinary(File file) {
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < header.length) {
+                int count = in.read(header, read, header.length - read);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+        return Arrays.equals(MAGIC, header);
+    }
+
+    /**
+     * Write the dependencies of the classes in a jar to a temporary file next to target, and then
+     * rename it to target, so that readers never see a partially written graph.
+     */
+    public static void write(Map<String, Set<String>> deps, File target) throws IOException {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        int edgeCount = 0;
+        for (Map.Entry<String, Set<String>> entry : deps.entrySet()) {
+            addName(entry.getKey(), ids, names);
+            for (String dep : entry.getValue()) {
+                addName(dep, ids, names);
+                edgeCount++;
+            }
+        }
+        Path parent = target.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, target.getName(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.write(MAGIC);
+                out.writeByte(VERSION);
+                writeVarint(out, names.size());
+                for (String name : names) {
+                    byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                    writeVarint(out, bytes.length);
+                    out.write(bytes);
+                }
+                writeVarint(out, edgeCount);
+                for (Map.Entry<String, Set<String>> entry : deps.entrySet()) {
+                    int source = ids.get(entry.getKey());
+                    for (String dep : entry.getValue()) {
+                        writeVarint(out, source);
+                        writeVarint(out, ids.get(dep));
+                    }
+                }
+            }
+            Writer.moveAtomically(temp, target.toPath());
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Add all edges of a binary graph file to the builder.
+     *
+     * @return The number of edges in the file
+     */
+    public static int addEdgesToGraphBuilder(File file, DependencyGraph.Builder builder) throws IOException {
+        ByteBuffer buffer = open(file);
+        int[] vertexIds = new int[readVarint(buffer)];
+        for (int i = 0; i < vertexIds.length; i++) {
+            vertexIds[i] = builder.addVertex(readName(buffer));
+        }
+        int edgeCount = readVarint(buffer);
+        for (int i = 0; i < edgeCount; i++) {
+            int source = vertexIds[readVarint(buffer)];
+            builder.addEdge(source, vertexIds[readVarint(buffer)]);
+        }
+        return edgeCount;
+    }
+
+    /**
+     * Pass every edge of a binary graph file to the consumer. Each class name is created once per file.
+     */
+    public static void readEdges(File file, BiConsumer<String, String> edgeConsumer) throws IOException {
+        ByteBuffer buffer = open(file);
+        String[] names = new String[readVarint(buffer)];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = readName(buffer);
+        }
+        int edgeCount = readVarint(buffer);
+        for (int i = 0; i < edgeCount; i++) {
+            String source = names[readVarint(buffer)];
+            edgeConsumer.accept(source, names[readVarint(buffer)]);
+        }
+    }
+
+    /**
+     * Read a binary graph file and check its header.
+     *
+     * @return The buffer, positioned after the header
+     */
+    private static ByteBuffer open(File file) throws IOException {
+        // read into the heap rather than map the file, as a mapped file cannot be replaced on Windows until
+        // the mapping is garbage collected
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        for (byte magic : MAGIC) {
+            if (buffer.get() != magic) {
+                throw new IOException("Not a binary graph file: " + file);
+            }
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary graph version " + version + ": " + file);
+        }
+        return buffer;
+    }
+
+    private static String readName(ByteBuffer buffer) {
+        byte[] bytes = new byte[readVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void addName(String name, Map<String, Integer> ids, List<String> names) {
+        if (!ids.containsKey(name)) {
+            ids.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        int remaining = value;
+        while ((remaining & ~0x7F) != 0) {
+            out.writeByte((remaining & 0x7F) | 0x80);
+            remaining >>>= 7;
+        }
+        out.writeByte(remaining);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte next = buffer.get();
+        while (next < 0) {
+            value |= (next & 0x7F) << shift;
+            shift += 7;
+            next = buffer.get();
+        }
+        return value | (next << shift);
+    }
+}
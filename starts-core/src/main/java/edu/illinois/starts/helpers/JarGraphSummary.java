@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Condenses the jdeps graph of a library jar before it is stored in the jdeps cache. Test selection only
+ * needs to know which classes each class can transitively reach, not through which edges, so we keep the
+ * smallest graph with the same reachability that we can compute cheaply:
+ *
+ * <ul>
+ * <li>the classes of each strongly connected component are linked in a single cycle, and</li>
+ * <li>the edges between components are reduced to the transitive reduction of the component DAG,
+ * e.g., an edge to java.lang.Object is dropped if the class already reaches java.lang.Object through
+ * another dependency.</li>
+ * </ul>
+ *
+ * <p>Classes of other jars and of the JDK are sinks of the graph of a jar, so every class that is reachable
+ * from a class of the jar, inside or outside the jar, stays reachable, and the graphs of several jars can be
+ * combined as before.
+ */
+public class JarGraphSummary {
+    private JarGraphSummary() {
+    }
+
+    /**
+     * Compute a graph with the same vertices and the same reachability as deps, but with fewer edges.
+     */
+    public static Map<String, Set<String>> summarize(Map<String, Set<String>> deps) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        for (Map.Entry<String, Set<String>> entry : deps.entrySet()) {
+            addName(entry.getKey(), ids, names);
+            for (String dep : entry.getValue()) {
+                addName(dep, ids, names);
+            }
+        }
+        int[][] successors = new int[names.size()][];
+        for (int v = 0; v < successors.length; v++) {
+            Set<String> targets = deps.get(names.get(v));
+            successors[v] = new int[targets == null ? 0 : targets.size()];
+            int index = 0;
+            if (targets != null) {
+                for (String target : targets) {
+                    successors[v][index++] = ids.get(target);
+                }
+            }
+        }
+        int[] component = new int[successors.length];
+        List<int[]> components = findComponents(successors, component);
+
+        Map<String, Set<String>> summary = new LinkedHashMap<>();
+        // components are numbered in reverse topological order, so the successors of a component always
+        // have smaller numbers than the component itself, and their reachable sets are known already
+        BitSet[] reachable = new BitSet[components.size()];
+        for (int comp = 0; comp < components.size(); comp++) {
+            int[] members = components.get(comp);
+            for (int i = 1; i < members.length; i++) {
+                addEdge(summary, names.get(members[i - 1]), names.get(members[i]));
+            }
+            if (members.length > 1) {
+                addEdge(summary, names.get(members[members.length - 1]), names.get(members[0]));
+            }
+            BitSet next = new BitSet();
+            for (int member : members) {
+                for (int target : successors[member]) {
+                    if (component[target] != comp) {
+                        next.set(component[target]);
+                    }
+                }
+            }
+            // a successor that reaches another successor comes later in topological order, so we visit
+            // the successors from the highest number down, and keep only those not reached so far
+            BitSet covered = new BitSet();
+            for (int succ = next.previousSetBit(comp); succ >= 0; succ = next.previousSetBit(succ - 1)) {
+                if (!covered.get(succ)) {
+                    addEdge(summary, names.get(members[0]), names.get(components.get(succ)[0]));
+                    covered.or(reachable[succ]);
+                }
+            }
+            covered.set(comp);
+            reachable[comp] = covered;
+        }
+        return summary;
+    }
+
+    /**
+     * Find the strongly connected components with an iterative version of Tarjan's algorithm, which emits
+     * every component after all components that it reaches.
+     *
+     * @return The members of each component, indexed by the component number stored in component[]
+     */
+    private static List<int[]> findComponents(int[][] successors, int[] component) {
+        int size = successors.length;
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        int[] edgePos = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int[] callStack = new int[size];
+        Arrays.fill(index, -1);
+        List<int[]> components = new ArrayList<>();
+        int counter = 0;
+        int top = 0;
+        for (int root = 0; root < size; root++) {
+            if (index[root] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = counter;
+            lowLink[root] = counter++;
+            stack[top++] = root;
+            onStack[root] = true;
+            while (depth > 0) {
+                int vertex = callStack[depth - 1];
+                if (edgePos[vertex] < successors[vertex].length) {
+                    int target = successors[vertex][edgePos[vertex]++];
+                    if (index[target] < 0) {
+                        index[target] = counter;
+                        lowLink[target] = counter++;
+                        stack[top++] = target;
+                        onStack[target] = true;
+                        callStack[depth++] = target;
+                    } else if (onStack[target]) {
+                        lowLink[vertex] = Math.min(lowLink[vertex], index[target]);
+                    }
+                    continue;
+                }
+                depth--;
+                if (depth > 0) {
+                    int parent = callStack[depth - 1];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[vertex]);
+                }
+                if (lowLink[vertex] == index[vertex]) {
+                    int start = top - 1;
+                    while (stack[start] != vertex) {
+                        start--;
+                    }
+                    for (int i = start; i < top; i++) {
+                        onStack[stack[i]] = false;
+                        component[stack[i]] = components.size();
+                    }
+                    components.add(Arrays.copyOfRange(stack, start, top));
+                    top = start;
+                }
+            }
+        }
+        return components;
+    }
+
+    private static void addName(String name, Map<String, Integer> ids, List<String> names) {
+        if (!ids.containsKey(name)) {
+            ids.put(name, names.size());
+            names.add(name);
+        }
+    }
+
+    private static void addEdge(Map<String, Set<String>> graph, String source, String target) {
+        Set<String> targets = graph.get(source);
+        if (targets == null) {
+            targets = new HashSet<>();
+            graph.put(source, targets);
+        }
+        targets.add(target);
+    }
+}
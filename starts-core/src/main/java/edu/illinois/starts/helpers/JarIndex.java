@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.ChecksumUtil;
+import org.apache.commons.codec.digest.DigestUtils;
+
+/**
+ * The checksums of the entries of a jar. A .class entry is hashed like the classes in deps.zlc (i.e., with
+ * cleanBytes, if enabled), and any other entry by its bytes. The checksum of the jar is then computed from
+ * the names and checksums of its entries, so it does not change when a jar is packaged again with the same
+ * content but new timestamps, or with its entries in a different order. The build metadata that Maven puts
+ * in META-INF/maven (e.g., pom.properties, which may have the time of the build) is ignored.
+ *
+ * <p>The index of each jar is saved in the jar-index directory of the artifacts directory, in a file named
+ * after the MD5 of the path of the jar, with one line per entry: the checksum and the name of the entry.
+ */
+public class JarIndex implements StartsConstants {
+    public static final String INDEX_DIR = "jar-index";
+    private static final String MAVEN_METADATA = "META-INF/maven/";
+
+    // the checksum of each entry, sorted by name
+    private final Map<String, String> checksums;
+
+    private JarIndex(Map<String, String> checksums) {
+        this.checksums = checksums;
+    }
+
+    /**
+     * Read and hash every entry of a jar.
+     */
+    public static JarIndex compute(String jar, boolean cleanBytes) throws IOException {
+        ChecksumUtil checksumUtil = new ChecksumUtil(cleanBytes);
+        Map<String, String> checksums = new TreeMap<>();
+        try (ZipFile zipFile = new ZipFile(jar)) {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || entry.getName().startsWith(MAVEN_METADATA)) {
+                    continue;
+                }
+                byte[] bytes = AsmDepsExtractor.readFully(zipFile.getInputStream(entry));
+                checksums.put(entry.getName(), isClass(entry.getName()) ? checksumUtil.computeCheckSum(bytes)
+                        : DigestUtils.md5Hex(bytes));
+            }
+        }
+        return new JarIndex(checksums);
+    }
+
+    /**
+     * Read the index of a jar that was saved in the artifacts directory.
+     *
+     * @return The index, or null if none was saved for the jar
+     */
+    public static JarIndex read(String artifactsDir, String jar) {
+        File file = getIndexFile(artifactsDir, jar);
+        if (!file.exists()) {
+            return null;
+        }
+        Map<String, String> checksums = new TreeMap<>();
+        try {
+            for (String line : Files.readAllLines(file.toPath())) {
+                int separator = line.indexOf(WHITE_SPACE);
+                if (separator > 0) {
+                    checksums.put(line.substring(separator + 1), line.substring(0, separator));
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return null;
+        }
+        return new JarIndex(checksums);
+    }
+
+    public void write(String artifactsDir, String jar) {
+        File file = getIndexFile(artifactsDir, jar);
+        file.getParentFile().mkdirs();
+        try (BufferedWriter writer = Writer.getWriter(file.getAbsolutePath())) {
+            for (Map.Entry<String, String> entry : checksums.entrySet()) {
+                writer.write(entry.getValue() + WHITE_SPACE + entry.getKey());
+                writer.write(System.lineSeparator());
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * Delete the saved indexes of all jars but the given ones.
+     */
+    public static void deleteOthers(String artifactsDir, List<String> jars) {
+        File[] files = new File(artifactsDir, INDEX_DIR).listFiles();
+        if (files == null) {
+            return;
+        }
+        Set<String> keep = new HashSet<>();
+        for (String jar : jars) {
+            keep.add(getIndexFile(artifactsDir, jar).getName());
+        }
+        for (File file : files) {
+            if (!keep.contains(file.getName())) {
+                file.delete();
+            }
+        }
+    }
+
+    static File getIndexFile(String artifactsDir, String jar) {
+        return new File(new File(artifactsDir, INDEX_DIR), DigestUtils.md5Hex(jar));
+    }
+
+    /**
+     * The checksum of the jar, which only depends on the names and checksums of its entries.
+     */
+    public String getChecksum() {
+        StringBuilder content = new StringBuilder();
+        for (Map.Entry<String, String> entry : checksums.entrySet()) {
+            content.append(entry.getValue()).append(WHITE_SPACE).append(entry.getKey()).append('\n');
+        }
+        return DigestUtils.md5Hex(content.toString());
+    }
+
+    /**
+     * Find the classes that were added, removed or changed since the old index of the same jar.
+     *
+     * @return The names of the classes, or null if an entry that is not a class was added, removed or
+     *         changed, in which case we cannot tell which classes are affected
+     */
+    public Set<String> getChangedClasses(JarIndex old) {
+        Set<String> names = new HashSet<>(checksums.keySet());
+        names.addAll(old.checksums.keySet());
+        Set<String> changed = new HashSet<>();
+        for (String name : names) {
+            String checksum = checksums.get(name);
+            if (checksum != null && checksum.equals(old.checksums.get(name))) {
+                continue;
+            } else if (!isClass(name)) {
+                return null;
+            }
+            changed.add(name.substring(0, name.length() - CLASS_EXTENSION.length()).replace('/', '.'));
+        }
+        return changed;
+    }
+
+    private static boolean isClass(String name) {
+        return name.endsWith(CLASS_EXTENSION) && !name.startsWith("META-INF/");
+    }
+}
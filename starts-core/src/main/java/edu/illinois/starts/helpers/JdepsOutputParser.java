@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.constants.StartsConstants;
+
+/**
+ * A Writer to which jdeps can print its "-v" output directly. Each line is parsed as soon as it is
+ * complete, and every "source -&gt; target" dependency in it is added to a map from each class to its
+ * dependencies, so the text of the output is never held in memory. Only the current line is buffered, and
+ * every class name is stored once, however many lines mention it.
+ */
+public class JdepsOutputParser extends java.io.Writer implements StartsConstants {
+    private static final char[] ARROW = {'-', '>'};
+
+    private final Map<String, Set<String>> deps = new HashMap<>();
+    private final Map<String, String> names = new HashMap<>();
+    private char[] line = new char[256];
+    private int length;
+    private boolean empty = true;
+
+    /**
+     * Get the collected dependencies. Only call this after jdeps finished and the parser was flushed or closed.
+     */
+    public Map<String, Set<String>> getDeps() {
+        return deps;
+    }
+
+    /**
+     * Check whether jdeps printed anything at all.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            put(chars[i]);
+        }
+    }
+
+    @Override
+    public void write(String string) {
+        write(string, 0, string.length());
+    }
+
+    @Override
+    public void write(String string, int offset, int count) {
+        for (int i = offset; i < offset + count; i++) {
+            put(string.charAt(i));
+        }
+    }
+
+    @Override
+    public void write(int next) {
+        put((char) next);
+    }
+
+    @Override
+    public void flush() {
+        // a line is only parsed once it is complete; close() parses the last line
+    }
+
+    @Override
+    public void close() {
+        endLine();
+    }
+
+    private void put(char next) {
+        empty = false;
+        if (next == '\n' || next == '\r') {
+            endLine();
+            return;
+        }
+        if (length == line.length) {
+            line = Arrays.copyOf(line, length * 2);
+        }
+        line[length++] = next;
+    }
+
+    /**
+     * Parse the buffered line, which has the form "source -&gt; target [location]". Lines without an
+     * arrow, and the headers for the analyzed directories, jars and .class files, are skipped.
+     */
+    private void endLine() {
+        int arrow = indexOfArrow();
+        if (arrow >= 0) {
+            int leftStart = skipWhitespace(0, arrow);
+            int leftEnd = trimEnd(leftStart, arrow);
+            int rightStart = skipWhitespace(arrow + ARROW.length, length);
+            int rightEnd = rightStart;
+            while (rightEnd < length && !Character.isWhitespace(line[rightEnd])) {
+                rightEnd++;
+            }
+            if (leftStart < leftEnd && !isHeader(leftStart, leftEnd)) {
+                addEdge(name(leftStart, leftEnd), name(rightStart, rightEnd));
+            }
+        }
+        length = 0;
+    }
+
+    private void addEdge(String source, String target) {
+        Set<String> classDeps = deps.get(source);
+        if (classDeps == null) {
+            classDeps = new HashSet<>();
+            deps.put(source, classDeps);
+        }
+        classDeps.add(target);
+    }
+
+    private int indexOfArrow() {
+        for (int i = 0; i + 1 < length; i++) {
+            if (line[i] == ARROW[0] && line[i + 1] == ARROW[1]) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int skipWhitespace(int from, int to) {
+        int start = from;
+        while (start < to && Character.isWhitespace(line[start])) {
+            start++;
+        }
+        return start;
+    }
+
+    private int trimEnd(int from, int to) {
+        int end = to;
+        while (end > from && Character.isWhitespace(line[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    private boolean isHeader(int from, int to) {
+        return startsWith(from, to, CLASSES) || startsWith(from, to, TEST_CLASSES)
+                || endsWith(from, to, JAR_EXTENSION) || endsWith(from, to, CLASS_EXTENSION);
+    }
+
+    private boolean startsWith(int from, int to, String prefix) {
+        return to - from >= prefix.length() && regionMatches(from, prefix);
+    }
+
+    private boolean endsWith(int from, int to, String suffix) {
+        return to - from >= suffix.length() && regionMatches(to - suffix.length(), suffix);
+    }
+
+    private boolean regionMatches(int from, String string) {
+        for (int i = 0; i < string.length(); i++) {
+            if (line[from + i] != string.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String name(int from, int to) {
+        String name = new String(line, from, to - from);
+        String existing = names.get(name);
+        if (existing == null) {
+            names.put(name, name);
+            return name;
+        }
+        return existing;
+    }
+}
@@ -5,20 +5,35 @@
 package edu.illinois.starts.helpers;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
+import edu.illinois.starts.enums.DependencyExtractor;
 import edu.illinois.starts.util.ChecksumUtil;
 import edu.illinois.starts.util.Logger;
-import edu.illinois.yasgl.DirectedGraph;
-import edu.illinois.yasgl.DirectedGraphBuilder;
 import org.apache.maven.surefire.booter.Classpath;
 import org.ekstazi.util.Types;
 
@@ -29,17 +44,22 @@ public class Loadables implements StartsConstants {
     private static final Logger LOGGER = Logger.getGlobal();
 
     Map<String, Set<String>> deps;
-    List<String> extraEdges;
     private List<String> classesToAnalyze;
     private File cache;
     private String sfPathString;
-    private DirectedGraph<String> graph;
+    private DependencyGraph graph;
     private Map<String, Set<String>> transitiveClosure;
     private Set<String> unreached;
     private boolean filterLib;
     private boolean useThirdParty;
     private Classpath surefireClasspath;
     private String artifactsDir;
+    private DependencyExtractor depExtractor = DependencyExtractor.JDEPS;
+    private boolean incrementalDeps;
+    private boolean computeClosures = true;
+    private int depShards = 1;
+    private Cache libraryCache;
+    private ReactorSession reactorSession;
 
     public Loadables(List<String> classesToAnalyze, String artifactsDir, String sfPathString,
                      boolean useThirdParty, boolean filterLib, File cache) {
@@ -51,7 +71,7 @@ public class Loadables implements StartsConstants {
         this.useThirdParty = useThirdParty;
     }
 
-    public DirectedGraph<String> getGraph() {
+    public DependencyGraph getGraph() {
         return graph;
     }
 
@@ -65,11 +85,14 @@ public class Loadables implements StartsConstants {
 
     public List<String> getClasspathWithNoJars() {
         // There is a cache of all third party libraries, remove third-party jars from jdeps classpath
-        // ASSUMPTION: local dependencies (modules in the same mvn project) are directories, not jars
+        // ASSUMPTION: local dependencies (modules in the same mvn project) are directories, not jars, unless
+        // there is a reactor session, which tells us which jars were built by modules of the reactor
         List<String> localPaths = new ArrayList<>();
         if (surefireClasspath != null) {
             for (String path : surefireClasspath.getClassPath()) {
-                if (!path.endsWith(JAR_EXTENSION) && new File(path).exists()) {
+                boolean local = !path.endsWith(JAR_EXTENSION)
+                        || (reactorSession != null && reactorSession.isReactorElement(path));
+                if (local && new File(path).exists()) {
                     localPaths.add(path);
                 }
             }
@@ -79,17 +102,30 @@ public class Loadables implements StartsConstants {
 
     public Loadables create(List<String> moreEdges, Classpath sfClassPath,
                             boolean computeUnreached) {
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        addEdgesToGraphBuilder(builder, moreEdges);
+        return create(builder, sfClassPath, computeUnreached);
+    }
+
+    /**
+     * Extract the dependencies of the local classes, add them to the builder (which may already
+     * contain edges, e.g., from third-party libraries), and compute the transitive closure of each test.
+     */
+    public Loadables create(DependencyGraph.Builder builder, Classpath sfClassPath,
+                            boolean computeUnreached) {
         setSurefireClasspath(sfClassPath);
-        LOGGER.log(Level.FINEST, "More: " + moreEdges.size());
-        extraEdges = moreEdges;
+        LOGGER.log(Level.FINEST, "More: " + builder.getEdgeCount());
         long startTime = System.currentTimeMillis();
         deps = getDepMap(sfPathString, classesToAnalyze);
         long jdepsTime = System.currentTimeMillis();
-        graph = makeGraph(deps, extraEdges);
+        if (libraryCache != null && deps != null) {
+            libraryCache.loadReachableM2EdgesFromCache(sfPathString, deps, builder);
+        }
+        graph = makeGraph(deps, builder);
         long graphBuildingTime = System.currentTimeMillis();
-        transitiveClosure = getTransitiveClosurePerClass(graph, classesToAnalyze);
+        transitiveClosure = computeClosures ? getTransitiveClosurePerClass(graph, classesToAnalyze) : null;
         long transitiveClosureTime = System.currentTimeMillis();
-        if (computeUnreached) {
+        if (computeUnreached && transitiveClosure != null) {
             unreached = findUnreached(deps, transitiveClosure);
             LOGGER.log(Level.INFO, "UNREACHED(count): " + unreached.size());
         }
@@ -103,8 +139,8 @@ public class Loadables implements StartsConstants {
         LOGGER.log(Level.FINE, "[PROFILE] createLoadable(findUnreached): "
                 + Writer.millsToSeconds(endTime - findUnreachedTime));
         LOGGER.log(Level.FINE, "[PROFILE] createLoadable(TOTAL): " + Writer.millsToSeconds(endTime - startTime));
-        LOGGER.log(Level.INFO, "STARTS:Nodes: " + graph.getVertices().size());
-        LOGGER.log(Level.INFO, "STARTS:Edges: " + graph.getEdges().size());
+        LOGGER.log(Level.INFO, "STARTS:Nodes: " + graph.getVertexCount());
+        LOGGER.log(Level.INFO, "STARTS:Edges: " + graph.getEdgeCount());
         return this;
     }
 
@@ -117,7 +153,23 @@ public class Loadables implements StartsConstants {
      */
     private Set<String> findUnreached(Map<String, Set<String>> deps,
                                       Map<String, Set<String>> testDeps) {
-        Set<String> allClasses = new HashSet<>();
+        // mark the ids of all reached types; names are only compared for types that are not in the graph
+        BitSet reached = new BitSet(graph.getVertexCount());
+        Set<String> reachedOutsideGraph = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : testDeps.entrySet()) {
+            markReached(entry.getKey(), reached, reachedOutsideGraph);
+            Set<String> closure = entry.getValue();
+            if (closure instanceof DependencyGraph.VertexSet
+                    && ((DependencyGraph.VertexSet) closure).getGraph() == graph) {
+                reached.or(((DependencyGraph.VertexSet) closure).getIds());
+            } else {
+                for (String dep : closure) {
+                    markReached(dep, reached, reachedOutsideGraph);
+                }
+            }
+        }
+        int allCount = 0;
+        Set<String> unreachedClasses = new HashSet<>();
         for (String loc : deps.keySet()) {
             // 1. jdeps finds no dependencies for a class if the class' dependencies were not analyzed (e.g., no -R)
             // 2. every class in the CUT has non-empty jdeps dependency; they , at least, depend on java.lang.Object
@@ -129,34 +181,36 @@ public class Loadables implements StartsConstants {
                     || !Types.isIgnorableInternalName(className)) {
                 // this means that this a class we want to track, either because it is in the CUT
                 // or in some jar that we are tracking
-                allClasses.add(loc);
+                allCount++;
+                int id = graph.getId(loc);
+                if (id == DependencyGraph.NO_ID ? !reachedOutsideGraph.contains(loc) : !reached.get(id)) {
+                    unreachedClasses.add(loc);
+                }
             }
         }
-        LOGGER.log(Level.INFO, "ALL(count): " + allClasses.size());
-        Set<String> reached = new HashSet<>(testDeps.keySet());
-        for (String test : testDeps.keySet()) {
-            reached.addAll(testDeps.get(test));
-        }
-        // remove the reached classes from allClasses to get the unreached classes.
-        allClasses.removeAll(reached);
-        return allClasses;
+        LOGGER.log(Level.INFO, "ALL(count): " + allCount);
+        return unreachedClasses;
     }
 
-    private DirectedGraph<String> makeGraph(Map<String, Set<String>> deps,
-                                            List<String> moreEdges) {
-        DirectedGraphBuilder<String> builder = getBuilderFromDeps(deps);
-        addEdgesToGraphBuilder(builder, moreEdges);
-        return builder.build();
+    private void markReached(String name, BitSet reached, Set<String> reachedOutsideGraph) {
+        int id = graph.getId(name);
+        if (id == DependencyGraph.NO_ID) {
+            reachedOutsideGraph.add(name);
+        } else {
+            reached.set(id);
+        }
     }
 
-    private DirectedGraphBuilder<String> getBuilderFromDeps(Map<String, Set<String>> deps) {
-        DirectedGraphBuilder<String> builder = new DirectedGraphBuilder<>();
-        for (String key : deps.keySet()) {
-            for (String dep : deps.get(key)) {
-                builder.addEdge(key, dep);
+    private DependencyGraph makeGraph(Map<String, Set<String>> deps, DependencyGraph.Builder builder) {
+        if (deps != null) {
+            for (Map.Entry<String, Set<String>> entry : deps.entrySet()) {
+                int source = builder.addVertex(entry.getKey());
+                for (String dep : entry.getValue()) {
+                    builder.addEdge(source, builder.addVertex(dep));
+                }
             }
         }
-        return builder;
+        return builder.build();
     }
 
     public Map<String, Set<String>> getDepMap(String pathToUse, List<String> classes)
@@ -165,60 +219,300 @@ public class Loadables implements StartsConstants {
             //There are no test classes, no need to waste time with jdeps
             return null;
         }
-        List<String> args = new ArrayList<>(Arrays.asList("-v"));
-        if (filterLib) {
-            // TODO: We need a cleaner/generic way to add filters
-            args.addAll(Arrays.asList("-filter", "java.*|sun.*"));
-        }
         List<String> localPaths = getClasspathWithNoJars();
         if (localPaths.isEmpty()) {
             throw new IllegalArgumentException("JDEPS cannot run with an empty classpath.");
         }
-        String jdepsClassPath;
-        if ((!cache.exists() || (cache.isDirectory() && cache.list().length == 0)) && useThirdParty) {
+        boolean recursive = (!cache.exists() || (cache.isDirectory() && cache.list().length == 0)) && useThirdParty;
+        if (recursive) {
             //There is no cache of jdeps graphs, so we want to run jdeps recursively with the entire surefire classpath
             LOGGER.log(Level.WARNING, "Should jdeps cache really be empty? Running in recursive mode.");
-            args.add("-R");
-            jdepsClassPath = pathToUse;
+        }
+        Map<String, Set<String>> depMap;
+        if (incrementalDeps && !recursive) {
+            depMap = getDepMapIncrementally(localPaths);
+        } else if (reactorSession != null && !recursive) {
+            depMap = getDepMapFromSession(localPaths);
         } else {
-            jdepsClassPath = Writer.pathToString(localPaths);
+            depMap = extractDeps(localPaths, recursive ? pathToUse : Writer.pathToString(localPaths), recursive);
         }
-        args.addAll(Arrays.asList("-cp", jdepsClassPath));
-        args.addAll(localPaths);
-        LOGGER.log(Level.FINEST, "JDEPS CMD: " + args);
-        Map<String, Set<String>> depMap = RTSUtil.runJdeps(args);
         if (LOGGER.getLoggingLevel().intValue() == Level.FINEST.intValue()) {
             Writer.writeMapToFile(depMap, artifactsDir + File.separator + "jdeps-out");
         }
         return depMap;
     }
 
-    private void addEdgesToGraphBuilder(DirectedGraphBuilder<String> builder, List<String> edges) {
-        for (String edge : edges) {
-            String[] parts = edge.split(WHITE_SPACE);
-            if (parts.length != 2) {
-                LOGGER.log(Level.SEVERE, "@@BrokenEdge: " + edge);
+    /**
+     * Extract the dependencies of the classes in the given paths. With more than one shard (and without
+     * recursion, where every shard would walk the same libraries), the classes are split into shards
+     * that are analyzed concurrently, and the dependency maps of the shards are merged.
+     */
+    Map<String, Set<String>> extractDeps(List<String> paths, String classPath, boolean recursive) {
+        if (depShards > 1 && !recursive) {
+            List<List<String>> shards = splitIntoShards(paths, depShards);
+            if (shards.size() > 1) {
+                return extractDepsInShards(shards, classPath);
+            }
+        }
+        return extractShard(paths, classPath, recursive);
+    }
+
+    private Map<String, Set<String>> extractDepsInShards(final List<List<String>> shards, final String classPath) {
+        ExecutorService executor = Executors.newFixedThreadPool(shards.size());
+        try {
+            List<Future<Map<String, Set<String>>>> futures = new ArrayList<>();
+            for (int i = 0; i < shards.size(); i++) {
+                final int shard = i;
+                futures.add(executor.submit(new Callable<Map<String, Set<String>>>() {
+                    @Override
+                    public Map<String, Set<String>> call() {
+                        long start = System.currentTimeMillis();
+                        Map<String, Set<String>> shardDeps = extractShard(shards.get(shard), classPath, false);
+                        long end = System.currentTimeMillis();
+                        LOGGER.log(Level.FINE, "[PROFILE] extractDeps(shard " + shard + ", "
+                                + shards.get(shard).size() + " paths): " + Writer.millsToSeconds(end - start));
+                        return shardDeps;
+                    }
+                }));
+            }
+            Map<String, Set<String>> depMap = new HashMap<>();
+            for (Future<Map<String, Set<String>>> future : futures) {
+                for (Map.Entry<String, Set<String>> entry : future.get().entrySet()) {
+                    Set<String> classDeps = depMap.get(entry.getKey());
+                    if (classDeps == null) {
+                        depMap.put(entry.getKey(), entry.getValue());
+                    } else {
+                        // the same class was found in more than one path, as jdeps would report it twice
+                        classDeps.addAll(entry.getValue());
+                    }
+                }
+            }
+            return depMap;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            throw new RuntimeException(ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Split the classes in the given paths into at most shardCount shards of similar size. Directories
+     * are split into the .class files of their packages, and all classes of a package go to the same
+     * shard; jars and .class files are kept whole.
+     *
+     * @return The paths (jars, directories or .class files) to analyze in each shard
+     */
+    static List<List<String>> splitIntoShards(List<String> paths, int shardCount) {
+        List<List<String>> groups = new ArrayList<>();
+        for (String path : paths) {
+            File file = new File(path);
+            if (!file.isDirectory()) {
+                groups.add(new ArrayList<>(Collections.singletonList(path)));
                 continue;
             }
-            String src = parts[0].intern();
-            String dest = parts[1].intern();
-            builder.addEdge(src, dest);
+            final Map<Path, List<String>> packages = new TreeMap<>();
+            try {
+                Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+                    @Override
+                    public FileVisitResult visitFile(Path classFile, BasicFileAttributes attrs) {
+                        if (classFile.toString().endsWith(CLASS_EXTENSION)) {
+                            List<String> classFiles = packages.get(classFile.getParent());
+                            if (classFiles == null) {
+                                classFiles = new ArrayList<>();
+                                packages.put(classFile.getParent(), classFiles);
+                            }
+                            classFiles.add(classFile.toString());
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+                groups.add(new ArrayList<>(Collections.singletonList(path)));
+                continue;
+            }
+            groups.addAll(packages.values());
         }
+        // place the largest groups first, each into the shard that has the fewest paths so far
+        Collections.sort(groups, new Comparator<List<String>>() {
+            @Override
+            public int compare(List<String> left, List<String> right) {
+                return Integer.compare(right.size(), left.size());
+            }
+        });
+        List<List<String>> shards = new ArrayList<>();
+        for (List<String> group : groups) {
+            if (shards.size() < shardCount) {
+                shards.add(group);
+                continue;
+            }
+            List<String> smallest = shards.get(0);
+            for (List<String> shard : shards) {
+                if (shard.size() < smallest.size()) {
+                    smallest = shard;
+                }
+            }
+            smallest.addAll(group);
+        }
+        return shards;
     }
 
-    public static Map<String, Set<String>> getTransitiveClosurePerClass(DirectedGraph<String> tcGraph,
-                                                                  List<String> classesToAnalyze) {
-        Map<String, Set<String>> tcPerTest = new HashMap<>();
-        for (String test : classesToAnalyze) {
-            Set<String> deps = YasglHelper.computeReachabilityFromChangedClasses(
-                    new HashSet<>(Arrays.asList(test)), tcGraph);
-            deps.add(test);
-            tcPerTest.put(test, deps);
+    private Map<String, Set<String>> extractShard(List<String> paths, String classPath, boolean recursive) {
+        if (depExtractor == DependencyExtractor.ASM) {
+            AsmDepsExtractor extractor = new AsmDepsExtractor(filterLib);
+            return recursive ? extractor.getDepMapRecursive(paths, Arrays.asList(classPath.split(File.pathSeparator)))
+                    : extractor.getDepMap(paths);
+        }
+        List<String> args = new ArrayList<>(Arrays.asList("-v"));
+        if (filterLib) {
+            args.addAll(Arrays.asList("-filter", JDEPS_FILTER));
+        }
+        if (recursive) {
+            args.add("-R");
+        }
+        args.addAll(Arrays.asList("-cp", classPath));
+        args.addAll(paths);
+        LOGGER.log(Level.FINEST, "JDEPS CMD: " + args);
+        return RTSUtil.runJdeps(args);
+    }
+
+    /**
+     * The settings that change which dependencies are extracted from the same classes.
+     */
+    private String getDepSettings() {
+        return depExtractor + WHITE_SPACE + filterLib;
+    }
+
+    /**
+     * Reuse the dependencies that we stored in the previous run for all classes whose checksum did not
+     * change, and only extract the dependencies of the classes that were added or changed.
+     */
+    private Map<String, Set<String>> getDepMapIncrementally(List<String> localPaths) {
+        long start = System.currentTimeMillis();
+        ClassDepsStore store = new ClassDepsStore(artifactsDir, getDepSettings());
+        Map<String, String> changed = store.findChangedClasses(localPaths);
+        long findChanged = System.currentTimeMillis();
+        if (!changed.isEmpty()) {
+            // unless nothing was stored yet, pass only the .class files of the changed classes to jdeps (or ASM)
+            List<String> toAnalyze = store.isEmpty() ? localPaths : new ArrayList<>(changed.values());
+            store.update(changed.keySet(), extractDeps(toAnalyze, Writer.pathToString(localPaths), false));
+            store.save();
+        }
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "[PROFILE] getDepMapIncrementally(findChangedClasses): "
+                + Writer.millsToSeconds(findChanged - start));
+        LOGGER.log(Level.FINE, "[PROFILE] getDepMapIncrementally(extractChanged): "
+                + Writer.millsToSeconds(end - findChanged));
+        LOGGER.log(Level.INFO, "STARTS:ReanalyzedClasses: " + changed.size());
+        return store.getDepMap();
+    }
+
+    /**
+     * Reuse the dependencies of each classpath element that an earlier module of the reactor extracted, and
+     * only extract the elements that no module extracted yet, or that changed since, one at a time.
+     */
+    private Map<String, Set<String>> getDepMapFromSession(List<String> localPaths) {
+        long start = System.currentTimeMillis();
+        String classPath = Writer.pathToString(localPaths);
+        Map<String, Set<String>> depMap = new HashMap<>();
+        String settings = getDepSettings();
+        int reused = 0;
+        for (String path : localPaths) {
+            Map<String, Set<String>> deps = reactorSession.getDeps(path, settings);
+            if (deps == null) {
+                deps = extractDeps(Collections.singletonList(path), classPath, false);
+                reactorSession.putDeps(path, settings, deps);
+            } else {
+                reused++;
+            }
+            for (Map.Entry<String, Set<String>> entry : deps.entrySet()) {
+                Set<String> existing = depMap.get(entry.getKey());
+                if (existing == null) {
+                    // shared with the session, and with the other modules
+                    depMap.put(entry.getKey(), entry.getValue());
+                } else {
+                    // the class is in two elements; merge, without changing the sets in the session
+                    Set<String> merged = new HashSet<>(existing);
+                    merged.addAll(entry.getValue());
+                    depMap.put(entry.getKey(), merged);
+                }
+            }
+        }
+        LOGGER.log(Level.INFO, "STARTS:ReusedClasspathElements: " + reused + " of " + localPaths.size());
+        LOGGER.log(Level.FINE, "[PROFILE] getDepMapFromSession: "
+                + Writer.millsToSeconds(System.currentTimeMillis() - start));
+        return depMap;
+    }
+
+    public static void addEdgesToGraphBuilder(DependencyGraph.Builder builder, List<String> edges) {
+        for (String edge : edges) {
+            addEdgeToGraphBuilder(builder, edge);
+        }
+    }
+
+    /**
+     * Add an edge of the form "source target" to the builder. The builder keeps a single copy of
+     * each class name, so the strings that we split off the line do not outlive this call.
+     */
+    public static void addEdgeToGraphBuilder(DependencyGraph.Builder builder, String edge) {
+        int space = edge.indexOf(' ');
+        if (space <= 0 || space == edge.length() - 1 || edge.indexOf(' ', space + 1) >= 0) {
+            LOGGER.log(Level.SEVERE, "@@BrokenEdge: " + edge);
+            return;
         }
-        return tcPerTest;
+        builder.addEdge(edge.substring(0, space), edge.substring(space + 1));
+    }
+
+    /**
+     * Compute, for each test, the set of types that the test can reach in the graph (including the test).
+     * The returned sets are read-only and may be shared between tests.
+     */
+    public static Map<String, Set<String>> getTransitiveClosurePerClass(DependencyGraph tcGraph,
+                                                                  List<String> classesToAnalyze) {
+        return new TransitiveClosure(tcGraph).computePerRoot(classesToAnalyze);
     }
 
     public void setSurefireClasspath(Classpath surefireClasspath) {
         this.surefireClasspath = surefireClasspath;
     }
+
+    public void setDepExtractor(DependencyExtractor depExtractor) {
+        this.depExtractor = depExtractor;
+    }
+
+    public void setIncrementalDeps(boolean incrementalDeps) {
+        this.incrementalDeps = incrementalDeps;
+    }
+
+    public void setDepShards(int depShards) {
+        this.depShards = depShards;
+    }
+
+    /**
+     * Load the edges of third-party libraries from the cache only as far as the local classes reach them,
+     * after the dependencies of the local classes are extracted.
+     */
+    public void setLibraryCache(Cache libraryCache) {
+        this.libraryCache = libraryCache;
+    }
+
+    /**
+     * Share the dependencies of the classes in each local classpath element with the other modules of the
+     * reactor (see ReactorSession). Not used with incrementalDeps, which keeps its own store per module.
+     */
+    public void setReactorSession(ReactorSession reactorSession) {
+        this.reactorSession = reactorSession;
+    }
+
+    /**
+     * Set this to false to only build the graph, e.g., when tests are selected by walking the graph
+     * backwards from changed classes. getTransitiveClosure() then returns null, and no types are
+     * reported as unreached.
+     */
+    public void setComputeClosures(boolean computeClosures) {
+        this.computeClosures = computeClosures;
+    }
 }
@@ -7,7 +7,6 @@ package edu.illinois.starts.helpers;
 import java.io.File;
 import java.io.IOException;
 import java.io.StringWriter;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -16,10 +15,10 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
 import edu.illinois.starts.maven.AgentLoader;
 import edu.illinois.starts.util.ChecksumUtil;
 import edu.illinois.starts.util.Logger;
-import edu.illinois.yasgl.DirectedGraph;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.ekstazi.data.RegData;
 
@@ -33,7 +32,7 @@ public class RTSUtil implements StartsConstants {
     // Name of tools.jar on Mac in JDK
     private static final String CLASSES_JAR_NAME = "classes.jar";
 
-    public static void saveForNextRun(String artifactsDir, DirectedGraph<String> graph,
+    public static void saveForNextRun(String artifactsDir, DependencyGraph graph,
                                       boolean printGraph, String graphFile) {
         long start = System.currentTimeMillis();
         Writer.writeGraph(graph, artifactsDir, printGraph, graphFile);
@@ -79,27 +78,18 @@ public class RTSUtil implements StartsConstants {
     public static Map<String, Set<String>> runJdeps(List<String> args) {
         LOGGER.log(Level.FINE, "JDEPS ARGS:" + args);
 
-        StringWriter output = AgentLoader.loadAndRunJdeps(args);
+        // parse the output while jdeps prints it, instead of buffering all of it first
+        JdepsOutputParser parser = new JdepsOutputParser();
+        AgentLoader.loadAndRunJdeps(args, parser);
+        parser.close();
         // jdeps can return an empty output when run on .jar files with no .class files
-        return output.getBuffer().length() != 0 ? getDepsFromJdepsOutput(output) : new HashMap<String, Set<String>>();
+        return parser.isEmpty() ? new HashMap<String, Set<String>>() : parser.getDeps();
     }
 
     public static Map<String, Set<String>> getDepsFromJdepsOutput(StringWriter jdepsOutput) {
-        Map<String, Set<String>> deps = new HashMap<>();
-        List<String> lines = Arrays.asList(jdepsOutput.toString().split(System.lineSeparator()));
-        for (String line : lines) {
-            String[] parts = line.split("->");
-            String left = parts[0].trim();
-            if (left.startsWith(CLASSES) || left.startsWith(TEST_CLASSES) || left.endsWith(JAR_EXTENSION)) {
-                continue;
-            }
-            String right = parts[1].trim().split(WHITE_SPACE)[0];
-            if (deps.keySet().contains(left)) {
-                deps.get(left).add(right);
-            } else {
-                deps.put(left, new HashSet<>(Arrays.asList(right)));
-            }
-        }
-        return deps;
+        JdepsOutputParser parser = new JdepsOutputParser();
+        parser.write(jdepsOutput.toString());
+        parser.close();
+        return parser.getDeps();
     }
 }
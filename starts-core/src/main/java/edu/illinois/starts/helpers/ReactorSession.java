@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * An analysis session that spans the modules of a reactor build. The dependencies of the classes of each
+ * local classpath element, i.e., the classes directory or the jar of a module, are extracted once, by the
+ * first module that has the element on its classpath, and every module that comes later reuses them. The
+ * session thus holds a single dependency map of the reactor, keyed by the owning element and then by class,
+ * from which each module assembles its graph, so the total cost of extraction scales with the size of the
+ * code, not with the number of modules times the size of the code.
+ *
+ * <p>Modules that extract dependencies with different settings (depExtractor and filterLib) do not share
+ * them. An element whose content changed since it was extracted (by the number, size and modification time of
+ * its files) is extracted again. The session is kept in static state, and is dropped as soon as a build
+ * with a different id starts.
+ */
+public class ReactorSession implements StartsConstants {
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static ReactorSession current;
+
+    private final String id;
+    private final List<String> buildDirectories;
+    private final Map<String, ElementDeps> elements = new ConcurrentHashMap<>();
+
+    private ReactorSession(String id, Collection<String> buildDirectories) {
+        this.id = id;
+        this.buildDirectories = new ArrayList<>();
+        for (String directory : buildDirectories) {
+            this.buildDirectories.add(new File(directory).getAbsolutePath() + File.separator);
+        }
+    }
+
+    /**
+     * Get the session of the build with the given id, starting a new session if there is none, or if the
+     * session that we have is for a different build.
+     *
+     * @param buildDirectories The build directories of all modules of the reactor
+     */
+    public static synchronized ReactorSession forBuild(String id, Collection<String> buildDirectories) {
+        if (current == null || !current.id.equals(id)) {
+            current = new ReactorSession(id, buildDirectories);
+        }
+        return current;
+    }
+
+    /**
+     * Whether a classpath element was built by a module of the reactor, e.g., the jar of a sibling module
+     * after the package phase, which we analyze like its classes directory, not as a third-party jar.
+     */
+    public boolean isReactorElement(String path) {
+        String absolute = new File(path).getAbsolutePath();
+        for (String directory : buildDirectories) {
+            if (absolute.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the dependencies of the classes in a classpath element, if they were extracted in this session with
+     * the same settings and the element did not change since.
+     *
+     * @param settings The settings with which the dependencies are extracted, as recorded by ClassDepsStore
+     * @return The dependencies, which must not be modified, or null if the element needs to be extracted
+     */
+    public Map<String, Set<String>> getDeps(String path, String settings) {
+        ElementDeps element = elements.get(settings + WHITE_SPACE + path);
+        if (element == null || !element.fingerprint.equals(fingerprint(path))) {
+            return null;
+        }
+        return element.deps;
+    }
+
+    public void putDeps(String path, String settings, Map<String, Set<String>> deps) {
+        elements.put(settings + WHITE_SPACE + path, new ElementDeps(fingerprint(path), deps));
+        LOGGER.log(Level.FINEST, "ReactorSession: extracted " + deps.size() + " classes of " + path
+                + " with " + settings);
+    }
+
+    /**
+     * A cheap summary of the content of a classpath element: the number of files, their total size and
+     * their latest modification time.
+     */
+    static String fingerprint(String path) {
+        File file = new File(path);
+        if (!file.isDirectory()) {
+            return file.length() + WHITE_SPACE + file.lastModified();
+        }
+        final long[] summary = new long[3];
+        try {
+            Files.walkFileTree(file.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path child, BasicFileAttributes attrs) {
+                    summary[0]++;
+                    summary[1] += attrs.size();
+                    summary[2] = Math.max(summary[2], attrs.lastModifiedTime().toMillis());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            // never matches, so the element is extracted again
+            return String.valueOf(System.nanoTime());
+        }
+        return summary[0] + WHITE_SPACE + summary[1] + WHITE_SPACE + summary[2];
+    }
+
+    private static class ElementDeps {
+        private final String fingerprint;
+        private final Map<String, Set<String>> deps;
+
+        ElementDeps(String fingerprint, Map<String, Set<String>> deps) {
+            this.fingerprint = fingerprint;
+            this.deps = deps;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Selects tests by walking the dependency graph of the last run backwards from the classes that changed,
+ * so the cost of a change is proportional to the classes and tests that can reach it, instead of to
+ * the closures of all tests. The graph is saved in a binary file together with the tests of the last run;
+ * its reverse adjacency is rebuilt when the graph is loaded.
+ */
+public class ReverseSelection implements StartsConstants {
+    public static final String GRAPH_FILE = "reverse-graph";
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static final int MAGIC = 0x53524742;  // "SRGB"
+    private static final int VERSION = 1;
+    private static final String JAR_SEPARATOR = "!/";
+
+    private final DependencyGraph graph;
+    private final Set<String> tests;
+
+    ReverseSelection(DependencyGraph graph, Collection<String> tests) {
+        this.graph = graph;
+        this.tests = new HashSet<>(tests);
+    }
+
+    /**
+     * Save the graph and the tests of this run for reverse selection in the next run.
+     */
+    public static void save(String artifactsDir, DependencyGraph graph, List<String> tests) {
+        long start = System.currentTimeMillis();
+        File file = new File(artifactsDir, GRAPH_FILE);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file.toPath())))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(tests.size());
+            for (String test : tests) {
+                out.writeUTF(test);
+            }
+            out.writeInt(graph.getVertexCount());
+            for (int v = 0; v < graph.getVertexCount(); v++) {
+                out.writeUTF(graph.getName(v));
+            }
+            for (int v = 0; v < graph.getVertexCount(); v++) {
+                out.writeInt(graph.getOutEnd(v) - graph.getOutStart(v));
+                for (int i = graph.getOutStart(v); i < graph.getOutEnd(v); i++) {
+                    out.writeInt(graph.getOutTarget(i));
+                }
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            file.delete();
+        }
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINEST, "[TIME]SAVING REVERSE GRAPH: " + (end - start) + MILLISECOND);
+    }
+
+    /**
+     * Load the graph and the tests that were saved in the last run.
+     *
+     * @return The saved selection data, or null if there is none (or it cannot be read)
+     */
+    public static ReverseSelection load(String artifactsDir) {
+        File file = new File(artifactsDir, GRAPH_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        long start = System.currentTimeMillis();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.log(Level.WARNING, "Ignoring unknown reverse graph file: " + file);
+                return null;
+            }
+            List<String> tests = new ArrayList<>();
+            for (int count = in.readInt(); count > 0; count--) {
+                tests.add(in.readUTF());
+            }
+            DependencyGraph.Builder builder = new DependencyGraph.Builder();
+            int vertexCount = in.readInt();
+            for (int v = 0; v < vertexCount; v++) {
+                builder.addVertex(in.readUTF());
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                for (int degree = in.readInt(); degree > 0; degree--) {
+                    builder.addEdge(v, in.readInt());
+                }
+            }
+            ReverseSelection selection = new ReverseSelection(builder.build(), tests);
+            long end = System.currentTimeMillis();
+            LOGGER.log(Level.FINEST, "[TIME]LOADING REVERSE GRAPH: " + (end - start) + MILLISECOND);
+            return selection;
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Get the classes that should have a row in deps.zlc: all classes that some test reaches in the graph,
+     * and the tests themselves, which may not be in the graph.
+     */
+    public static List<String> getReachedClasses(DependencyGraph graph, List<String> tests) {
+        BitSet testIds = new BitSet(graph.getVertexCount());
+        List<String> reached = new ArrayList<>();
+        for (String test : tests) {
+            int id = graph.getId(test);
+            if (id == DependencyGraph.NO_ID) {
+                reached.add(test);
+            } else {
+                testIds.set(id);
+            }
+        }
+        reached.addAll(graph.toVertexSet(graph.reachable(testIds, true)));
+        return reached;
+    }
+
+    /**
+     * Find the tests that are not affected by the changed URLs: a test is affected if it is new since the
+     * last run, or if it can reach a changed class in the graph of the last run, including itself.
+     *
+     * @param changedUrls The URLs whose checksum changed, as found by ZLCHelper.getChangedData
+     * @param allTests    The tests of this run
+     * @return            The tests of this run that are not affected
+     */
+    public Set<String> getNonAffectedTests(Set<String> changedUrls, List<String> allTests) {
+        long start = System.currentTimeMillis();
+        BitSet changedIds = new BitSet(graph.getVertexCount());
+        Set<String> changedOutsideGraph = new HashSet<>();
+        for (String url : changedUrls) {
+            for (String name : toClassNames(url)) {
+                int id = graph.getId(name);
+                if (id == DependencyGraph.NO_ID) {
+                    changedOutsideGraph.add(name);
+                } else {
+                    changedIds.set(id);
+                }
+            }
+        }
+        BitSet cone = graph.reachable(changedIds, false);
+        Set<String> nonAffected = new HashSet<>();
+        for (String test : allTests) {
+            int id = graph.getId(test);
+            boolean affected = !tests.contains(test) || changedOutsideGraph.contains(test)
+                    || (id != DependencyGraph.NO_ID && cone.get(id));
+            if (!affected) {
+                nonAffected.add(test);
+            }
+        }
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINEST, "REVERSE-SELECTION: " + cone.cardinality() + " of " + graph.getVertexCount()
+                + " classes reach a change");
+        LOGGER.log(Level.FINEST, TIME_COMPUTING_NON_AFFECTED + (end - start) + MILLISECOND);
+        return nonAffected;
+    }
+
+    /**
+     * Get the names that the class at a URL may have in the graph. For a class in a jar, the name follows
+     * from the path of its entry. For a class in a directory, we do not know which part of the path is
+     * the classpath root, so we return the name for every possible root; a name that is not in the graph
+     * does no harm, and one that is at worst selects more tests.
+     */
+    static Set<String> toClassNames(String url) {
+        Set<String> names = new HashSet<>();
+        if (!url.endsWith(CLASS_EXTENSION)) {
+            return names;
+        }
+        String path = url.substring(0, url.length() - CLASS_EXTENSION.length());
+        int separator = path.lastIndexOf(JAR_SEPARATOR);
+        if (separator >= 0) {
+            names.add(path.substring(separator + JAR_SEPARATOR.length()).replace('/', '.'));
+            return names;
+        }
+        for (int slash = path.lastIndexOf('/'); slash >= 0; slash = path.lastIndexOf('/', slash - 1)) {
+            names.add(path.substring(slash + 1).replace('/', '.'));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.data.DependencyGraph;
+
+/**
+ * Computes the transitive closure of many roots (e.g., all test classes) in a single pass over
+ * the dependency graph. We condense the part of the graph that is reachable from the roots into
+ * its strongly connected components, and compute the reachable set of each component from the
+ * reachable sets of its successors, in reverse topological order. The closure of a root is a
+ * read-only view of the bitset of its component, so roots in the same component and roots that
+ * share large dependency cones do not pay for separate traversals or copies.
+ */
+public class TransitiveClosure {
+    private static final int UNVISITED = -1;
+
+    private final DependencyGraph graph;
+
+    public TransitiveClosure(DependencyGraph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Compute the set of vertices that each root can reach, including the root itself.
+     * A root that is not in the graph only reaches itself.
+     *
+     * @param roots The vertices whose closure we want, e.g., the test classes
+     * @return      A map from each root to a read-only view of its closure
+     */
+    public Map<String, Set<String>> computePerRoot(List<String> roots) {
+        int[] rootIds = new int[roots.size()];
+        for (int i = 0; i < rootIds.length; i++) {
+            rootIds[i] = graph.getId(roots.get(i));
+        }
+        Components components = findComponents(rootIds);
+        BitSet[] reach = computeReach(components, rootIds);
+        Map<String, Set<String>> closure = new HashMap<>();
+        Map<Integer, Set<String>> views = new HashMap<>();
+        for (int i = 0; i < rootIds.length; i++) {
+            String root = roots.get(i);
+            if (rootIds[i] == DependencyGraph.NO_ID) {
+                closure.put(root, Collections.singleton(root));
+                continue;
+            }
+            int component = components.componentOf[rootIds[i]];
+            Set<String> view = views.get(component);
+            if (view == null) {
+                view = graph.toVertexSet(reach[component]);
+                views.put(component, view);
+            }
+            closure.put(root, view);
+        }
+        return closure;
+    }
+
+    /**
+     * Iterative version of Tarjan's algorithm, restricted to the vertices reachable from the roots.
+     * Components are numbered in the order in which Tarjan completes them, which is a reverse
+     * topological order of the condensed graph: every successor of a component has a smaller number.
+     */
+    private Components findComponents(int[] rootIds) {
+        int size = graph.getVertexCount();
+        int[] index = new int[size];
+        Arrays.fill(index, UNVISITED);
+        int[] low = new int[size];
+        int[] edgePos = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] sccStack = new int[size];
+        int sccTop = 0;
+        int[] callStack = new int[size];
+        int callTop = 0;
+        int counter = 0;
+        Components components = new Components(size);
+        for (int root : rootIds) {
+            if (root == DependencyGraph.NO_ID || index[root] != UNVISITED) {
+                continue;
+            }
+            index[root] = low[root] = counter++;
+            sccStack[sccTop++] = root;
+            onStack[root] = true;
+            callStack[callTop++] = root;
+            while (callTop > 0) {
+                int vertex = callStack[callTop - 1];
+                if (graph.getOutStart(vertex) + edgePos[vertex] < graph.getOutEnd(vertex)) {
+                    int next = graph.getOutTarget(graph.getOutStart(vertex) + edgePos[vertex]++);
+                    if (index[next] == UNVISITED) {
+                        index[next] = low[next] = counter++;
+                        sccStack[sccTop++] = next;
+                        onStack[next] = true;
+                        callStack[callTop++] = next;
+                    } else if (onStack[next]) {
+                        low[vertex] = Math.min(low[vertex], index[next]);
+                    }
+                    continue;
+                }
+                callTop--;
+                if (low[vertex] == index[vertex]) {
+                    int member = UNVISITED;
+                    while (member != vertex) {
+                        member = sccStack[--sccTop];
+                        onStack[member] = false;
+                        components.add(member);
+                    }
+                    components.close();
+                }
+                if (callTop > 0) {
+                    int parent = callStack[callTop - 1];
+                    low[parent] = Math.min(low[parent], low[vertex]);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Compute the reachable set of every component, releasing the bitsets of components that are
+     * not needed for any root once all of their predecessors have consumed them.
+     */
+    private BitSet[] computeReach(Components components, int[] rootIds) {
+        int count = components.count;
+        boolean[] needed = new boolean[count];
+        for (int root : rootIds) {
+            if (root != DependencyGraph.NO_ID) {
+                needed[components.componentOf[root]] = true;
+            }
+        }
+        // stamp[d] == c + 1 means that we already saw the edge from component c to component d
+        int[] stamp = new int[count];
+        int[] predecessors = new int[count];
+        for (int c = 0; c < count; c++) {
+            for (int i = components.start[c]; i < components.start[c + 1]; i++) {
+                int member = components.members[i];
+                for (int j = graph.getOutStart(member); j < graph.getOutEnd(member); j++) {
+                    int target = components.componentOf[graph.getOutTarget(j)];
+                    if (target != c && stamp[target] != c + 1) {
+                        stamp[target] = c + 1;
+                        predecessors[target]++;
+                    }
+                }
+            }
+        }
+        Arrays.fill(stamp, 0);
+        BitSet[] reach = new BitSet[count];
+        for (int c = 0; c < count; c++) {
+            BitSet bits = new BitSet();
+            for (int i = components.start[c]; i < components.start[c + 1]; i++) {
+                bits.set(components.members[i]);
+            }
+            for (int i = components.start[c]; i < components.start[c + 1]; i++) {
+                int member = components.members[i];
+                for (int j = graph.getOutStart(member); j < graph.getOutEnd(member); j++) {
+                    int target = components.componentOf[graph.getOutTarget(j)];
+                    if (target != c && stamp[target] != c + 1) {
+                        stamp[target] = c + 1;
+                        bits.or(reach[target]);
+                        if (--predecessors[target] == 0 && !needed[target]) {
+                            reach[target] = null;
+                        }
+                    }
+                }
+            }
+            reach[c] = bits;
+        }
+        return reach;
+    }
+
+    /**
+     * The strongly connected components, with the members of each component stored contiguously.
+     */
+    private static class Components {
+        private final int[] componentOf;
+        private final int[] members;
+        private final int[] start;
+        private int count;
+        private int size;
+
+        Components(int vertices) {
+            componentOf = new int[vertices];
+            Arrays.fill(componentOf, UNVISITED);
+            members = new int[vertices];
+            start = new int[vertices + 1];
+        }
+
+        void add(int vertex) {
+            componentOf[vertex] = count;
+            members[size++] = vertex;
+        }
+
+        void close() {
+            start[++count] = size;
+        }
+    }
+}
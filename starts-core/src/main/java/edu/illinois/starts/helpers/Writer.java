@@ -7,11 +7,14 @@ package edu.illinois.starts.helpers;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -24,13 +27,12 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
 import edu.illinois.starts.data.ZLCData;
 import edu.illinois.starts.data.ZLCFileContent;
 import edu.illinois.starts.data.ZLCFormat;
 import edu.illinois.starts.util.Logger;
 import edu.illinois.starts.util.Pair;
-import edu.illinois.yasgl.DirectedGraph;
-import edu.illinois.yasgl.Edge;
 import org.apache.commons.codec.binary.Hex;
 
 /**
@@ -39,6 +41,7 @@ import org.apache.commons.codec.binary.Hex;
 public class Writer implements StartsConstants {
     static final String STARS = "**********";
     private static final Logger LOGGER = Logger.getGlobal();
+    private static final int CHECKSUM_CHUNK = 1024 * 1024;
 
     public static void writeToFile(Collection col, String filename, String artifactsDir) {
         String outFilename = artifactsDir + File.separator + filename;
@@ -65,6 +68,14 @@ public class Writer implements StartsConstants {
     }
 
     public static void writeToFile(ZLCFileContent zlcFileContent, String filename) {
+        if (zlcFileContent.getFormat() == ZLCFormat.BINARY) {
+            try {
+                ZLCBinaryFile.write(zlcFileContent, filename);
+            } catch (IOException ioe) {
+                ioe.printStackTrace();
+            }
+            return;
+        }
         try (BufferedWriter writer = getWriter(filename)) {
             writer.write(zlcFileContent.getFormat() + System.lineSeparator());
             if (zlcFileContent.getFormat() == ZLCFormat.INDEXED) {
@@ -104,39 +115,15 @@ public class Writer implements StartsConstants {
         }
     }
 
-    public static void writeJarChecksums(List<String> sfPathString, String artifactsDir, List<Pair> jarCheckSums) {
-        String outFilename = Paths.get(artifactsDir, JAR_CHECKSUMS).toString();
-        try (BufferedWriter writer = getWriter(outFilename)) {
-            if (jarCheckSums != null) {
-                // we already computed the checksums while checking with old version in RunMojo#hasSameJarChecksum()
-                for (Pair<String, String> pair : jarCheckSums) {
-                    writer.write(pair.toString());
-                    writer.write(System.lineSeparator());
-                }
-            } else {
-                for (String path : sfPathString) {
-                    if (path.isEmpty()) {
-                        continue;
-                    }
-                    writer.write(getJarToChecksumMapping(path).toString());
-                    writer.write(System.lineSeparator());
-                }
-            }
-        } catch (IOException ioe) {
-            ioe.printStackTrace();
-        }
-    }
-
     /**
-     * Write the graph to file, together with any new edges (if any) that we get
-     * from parsing classes that changed.
+     * Write the edges of the graph to file, resolving the ids of the vertices to class names.
      *
      * @param graph         The graph that we want to write
      * @param artifactsDir  The directory in which we are writing STARTS artifacts
      * @param print         Write graph to file if true
      * @param graphFile     The file in which to optionally write the graph
      */
-    public static void writeGraph(DirectedGraph<String> graph, String artifactsDir, boolean print, String graphFile) {
+    public static void writeGraph(DependencyGraph graph, String artifactsDir, boolean print, String graphFile) {
         if (print) {
             String outFilename = artifactsDir + File.separator + graphFile;
             try (BufferedWriter writer = getWriter(outFilename)) {
@@ -144,9 +131,12 @@ public class Writer implements StartsConstants {
                     writer.write(EMPTY);
                     return;
                 }
-                // write all the edges in the graph
-                for (Edge<String> edge : graph.getEdges()) {
-                    writer.write(edge.getSource() + WHITE_SPACE + edge.getDestination() + System.lineSeparator());
+                for (int source = 0; source < graph.getVertexCount(); source++) {
+                    String sourceName = graph.getName(source);
+                    for (int i = graph.getOutStart(source); i < graph.getOutEnd(source); i++) {
+                        writer.write(sourceName + WHITE_SPACE + graph.getName(graph.getOutTarget(i))
+                                + System.lineSeparator());
+                    }
                 }
             } catch (IOException ioe) {
                 ioe.printStackTrace();
@@ -166,6 +156,18 @@ public class Writer implements StartsConstants {
         }
     }
 
+    /**
+     * Rename a file that we just wrote to its final name, replacing any existing file, atomically if
+     * the file system supports it.
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException amnse) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
     public static void writeTCSimple(Map<String, Set<String>> testDeps, String artifactsDir, String tcFile) {
         String outFilename = artifactsDir + File.separator + tcFile;
         try (BufferedWriter writer = getWriter(outFilename)) {
@@ -248,22 +250,22 @@ public class Writer implements StartsConstants {
 
     /**
      * Compute the checksum for the given map and return the jar
-     * and the checksum as a string.
+     * and the checksum as a string. The jar is read in chunks of 1 MB;
+     * we do not map it, as a mapped jar could not be rewritten on Windows,
+     * e.g., by the package phase of a later module, until the mapping is
+     * garbage collected.
      *
      * @param jar  The jar whose checksum we need to compute.
      */
     public static Pair<String, String> getJarToChecksumMapping(String jar) {
         Pair<String, String> pair = new Pair<>(jar, "-1");
-        byte[] bytes;
-        int bufSize = 65536 * 2;
-        try {
+        try (FileChannel channel = FileChannel.open(Paths.get(jar))) {
             MessageDigest md = MessageDigest.getInstance("MD5");
-            InputStream is = Files.newInputStream(Paths.get(jar));
-            bytes = new byte[bufSize];
-            int size = is.read(bytes, 0, bufSize);
-            while (size >= 0) {
-                md.update(bytes, 0, size);
-                size = is.read(bytes, 0, bufSize);
+            ByteBuffer buffer = ByteBuffer.allocate(CHECKSUM_CHUNK);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                md.update(buffer);
+                buffer.clear();
             }
             pair.setValue(Hex.encodeHexString(md.digest()));
         } catch (IOException ioe) {
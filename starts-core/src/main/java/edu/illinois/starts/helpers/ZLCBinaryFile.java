@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.data.ZLCData;
+import edu.illinois.starts.data.ZLCFileContent;
+
+/**
+ * Reads and writes deps.zlc in the BINARY format. The file starts with a magic number and a version,
+ * followed by a string table of test names and a string table of URL prefixes (the URL of a class up
+ * to its last '/'). Each row then stores the index of its prefix and the rest of its URL, the checksum
+ * as a fixed-width long, and the indexes of its tests either as delta-encoded varints or as a bitmap,
+ * whichever is smaller. All counts and lengths are varints.
+ *
+ * <p>The reader reads the file into one buffer and walks the rows with a cursor, so the test lists of a
+ * row are only decoded into a caller-provided bitset, and test names are only created once per file.
+ */
+public class ZLCBinaryFile {
+    public static final long UNKNOWN_CHECKSUM = Long.MIN_VALUE;
+    private static final byte[] MAGIC = {'Z', 'L', 'C', 'B'};
+    private static final byte VERSION = 1;
+    private static final byte DELTA_VARINTS = 0;
+    private static final byte BITMAP = 1;
+
+    private final ByteBuffer buffer;
+    private final String[] tests;
+    private final String[] prefixes;
+    private final int rowCount;
+    private int row;
+    private String rowUrl;
+    private long rowChecksum;
+    private int rowTestsPosition;
+
+    public ZLCBinaryFile(File file) throws IOException {
+        // read into the heap rather than map the file, as a mapping is only released when it is garbage
+        // collected, and until then, the file cannot be rewritten on Windows
+        buffer = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        for (byte magic : MAGIC) {
+            if (buffer.get() != magic) {
+                throw new IOException("Not a binary .zlc file: " + file);
+            }
+        }
+        byte version = buffer.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary .zlc version " + version + ": " + file);
+        }
+        tests = readStrings(buffer);
+        prefixes = readStrings(buffer);
+        rowCount = readVarint(buffer);
+    }
+
+    /**
+     * Check whether a file starts with the magic number of the BINARY format.
+     */
+    public static boolean isBinary(File file) {
+        byte[] header = new byte[MAGIC.length];
+        try (InputStream in = new FileInputStream(file)) {
+            int read = 0;
+            while (read < header.length) {
+                int count = in.read(header, read, header.length - read);
+                if (count < 0) {
+                    return false;
+                }
+                read += count;
+            }
+        } catch (IOException ioe) {
+            return false;
+        }
+        return Arrays.equals(MAGIC, header);
+    }
+
+    public static void write(ZLCFileContent zlcFileContent, String filename) throws IOException {
+        List<ZLCData> rows = zlcFileContent.getZlcData();
+        Map<String, Integer> prefixIds = new HashMap<>();
+        List<String> prefixes = new ArrayList<>();
+        for (ZLCData data : rows) {
+            String prefix = getPrefix(data.getUrl().toExternalForm());
+            if (!prefixIds.containsKey(prefix)) {
+                prefixIds.put(prefix, prefixes.size());
+                prefixes.add(prefix);
+            }
+        }
+        int testCount = zlcFileContent.getTestsCount();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(Paths.get(filename))))) {
+            out.write(MAGIC);
+            out.writeByte(VERSION);
+            writeStrings(out, zlcFileContent.getTests());
+            writeStrings(out, prefixes);
+            writeVarint(out, rows.size());
+            for (ZLCData data : rows) {
+                String url = data.getUrl().toExternalForm();
+                String prefix = getPrefix(url);
+                writeVarint(out, prefixIds.get(prefix));
+                writeString(out, url.substring(prefix.length()));
+                out.writeLong(toLong(data.getChecksum()));
+                writeTests(out, data.getTestsIdx(), testCount);
+            }
+        }
+    }
+
+    /**
+     * Convert a checksum to the fixed-width form in which we store it. Checksums that are not
+     * numbers are stored as UNKNOWN_CHECKSUM, which never equals a freshly computed checksum.
+     */
+    public static long toLong(String checksum) {
+        try {
+            return Long.parseLong(checksum);
+        } catch (NumberFormatException nfe) {
+            return UNKNOWN_CHECKSUM;
+        }
+    }
+
+    public List<String> getTests() {
+        return Arrays.asList(tests);
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Move the cursor to the next row.
+     *
+     * @return false if there are no more rows
+     */
+    public boolean nextRow() {
+        if (row == rowCount) {
+            return false;
+        }
+        row++;
+        String prefix = prefixes[readVarint(buffer)];
+        rowUrl = prefix.concat(readString(buffer));
+        rowChecksum = buffer.getLong();
+        rowTestsPosition = buffer.position();
+        skipTests();
+        return true;
+    }
+
+    public String getRowUrl() {
+        return rowUrl;
+    }
+
+    public long getRowChecksum() {
+        return rowChecksum;
+    }
+
+    /**
+     * Get the position of the tests of the current row, to decode them later with addTests.
+     */
+    public int getRowTestsPosition() {
+        return rowTestsPosition;
+    }
+
+    /**
+     * Set the indexes of the tests that are stored at the given position.
+     */
+    public void addTests(int position, BitSet testIds) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(position);
+        byte encoding = view.get();
+        if (encoding == BITMAP) {
+            for (int i = 0; i < (tests.length + 7) / 8; i++) {
+                int bits = view.get() & 0xFF;
+                for (int b = 0; bits != 0; b++, bits >>>= 1) {
+                    if ((bits & 1) != 0) {
+                        testIds.set(i * 8 + b);
+                    }
+                }
+            }
+        } else {
+            int count = readVarint(view);
+            int test = 0;
+            for (int i = 0; i < count; i++) {
+                test += readVarint(view);
+                testIds.set(test);
+            }
+        }
+    }
+
+    private void skipTests() {
+        byte encoding = buffer.get();
+        if (encoding == BITMAP) {
+            buffer.position(buffer.position() + (tests.length + 7) / 8);
+        } else {
+            int count = readVarint(buffer);
+            for (int i = 0; i < count; i++) {
+                readVarint(buffer);
+            }
+        }
+    }
+
+    private static String getPrefix(String url) {
+        return url.substring(0, url.lastIndexOf('/') + 1);
+    }
+
+    private static void writeTests(DataOutputStream out, Set<Integer> testsIdx, int testCount) throws IOException {
+        int[] sorted = new int[testsIdx.size()];
+        int size = 0;
+        for (int test : testsIdx) {
+            sorted[size++] = test;
+        }
+        Arrays.sort(sorted);
+        byte[] varints = new byte[sorted.length * 5];
+        int length = 0;
+        int previous = 0;
+        for (int test : sorted) {
+            length = putVarint(varints, length, test - previous);
+            previous = test;
+        }
+        int bitmapLength = (testCount + 7) / 8;
+        if (bitmapLength < length) {
+            byte[] bitmap = new byte[bitmapLength];
+            for (int test : sorted) {
+                bitmap[test / 8] |= 1 << (test % 8);
+            }
+            out.writeByte(BITMAP);
+            out.write(bitmap);
+        } else {
+            out.writeByte(DELTA_VARINTS);
+            writeVarint(out, sorted.length);
+            out.write(varints, 0, length);
+        }
+    }
+
+    private static void writeStrings(DataOutputStream out, List<String> strings) throws IOException {
+        writeVarint(out, strings.size());
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        byte[] bytes = new byte[5];
+        out.write(bytes, 0, putVarint(bytes, 0, value));
+    }
+
+    private static int putVarint(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static String[] readStrings(ByteBuffer buffer) {
+        String[] strings = new String[readVarint(buffer)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = readString(buffer);
+        }
+        return strings;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[readVarint(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarint(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte next = buffer.get();
+        while (next < 0) {
+            value |= (next & 0x7F) << shift;
+            shift += 7;
+            next = buffer.get();
+        }
+        return value | (next << shift);
+    }
+}
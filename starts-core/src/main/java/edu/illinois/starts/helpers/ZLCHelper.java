@@ -6,20 +6,32 @@ package edu.illinois.starts.helpers;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import java.util.logging.Level;
 import java.util.stream.Collectors;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
 import edu.illinois.starts.data.ZLCData;
 import edu.illinois.starts.data.ZLCFileContent;
 import edu.illinois.starts.data.ZLCFormat;
@@ -34,61 +46,106 @@ import org.ekstazi.util.Types;
 public class ZLCHelper implements StartsConstants {
     public static final String zlcFile = "deps.zlc";
     public static final String STAR_FILE = "file:*";
+    public static final String STAT_FILE = zlcFile + ".stat";
     private static final Logger LOGGER = Logger.getGlobal();
-    private static Map<String, ZLCData> zlcDataMap;
     private static final String NOEXISTING_ZLCFILE_FIRST_RUN = "@NoExistingZLCFile. First Run?";
+    private static final int ZLC_SHARD_SIZE = 256;
 
-    public ZLCHelper() {
-        zlcDataMap = new HashMap<>();
+    public static void updateZLCFile(Map<String, Set<String>> testDeps, ClassLoader loader,
+                                     String artifactsDir, Set<String> unreached, boolean useThirdParty,
+                                     ZLCFormat format) {
+        updateZLCFile(testDeps, loader, artifactsDir, unreached, useThirdParty, format, 1);
     }
 
-// TODO: Uncomment and fix this method. The problem is that it does not track newly added tests correctly
-//    public static void updateZLCFile(Map<String, Set<String>> testDeps, ClassLoader loader,
-//                                     String artifactsDir, Set<String> changed) {
-//        long start = System.currentTimeMillis();
-//        File file = new File(artifactsDir, zlcFile);
-//        if (! file.exists()) {
-//            Set<ZLCData> zlc = createZLCData(testDeps, loader);
-//            Writer.writeToFile(zlc, zlcFile, artifactsDir);
-//        } else {
-//            Set<ZLCData> zlcData = new HashSet<>();
-//            if (zlcDataMap != null) {
-//                for (ZLCData data : zlcDataMap.values()) {
-//                    String extForm = data.getUrl().toExternalForm();
-//                    if (changed.contains(extForm)) {
-//                         we need to update tests for this zlcData before adding
-//                        String fqn = Writer.toFQN(extForm);
-//                        Set<String> tests = new HashSet<>();
-//                        if (testDeps.keySet().contains(fqn)) {
-//                             a test class changed, it affects on itself
-//                            tests.add(fqn);
-//                        }
-//                        for (String test : testDeps.keySet()) {
-//                            if (testDeps.get(test).contains(fqn)) tests.add(test);
-//                        }
-//                        if (tests.isEmpty()) {
-//                             this dep no longer has ant tests depending on it???
-//                            continue;
-//                        }
-//                        data.setTests(tests);
-//                    }
-//                    zlcData.add(data);
-//                }
-//            }
-//            Writer.writeToFile(zlcData, zlcFile, artifactsDir);
-//        }
-//        long end = System.currentTimeMillis();
-//        System.out.println(TIME_UPDATING_CHECKSUMS + (end - start) + MS);
-//    }
+    public static void updateZLCFile(Map<String, Set<String>> testDeps, ClassLoader loader,
+                                     String artifactsDir, Set<String> unreached, boolean useThirdParty,
+                                     ZLCFormat format, int parallelism) {
+        updateZLCFile(testDeps, loader, artifactsDir, unreached, useThirdParty, format, parallelism, null, null);
+    }
 
+    /**
+     * Write the .zlc file for the next run. If we know which URLs changed since the existing .zlc file
+     * was written, and thus which tests are not affected by the changes, we merge the closures of the
+     * other tests into the rows of the existing file (see mergeZLCData), instead of building every row
+     * again from the closures of all tests.
+     *
+     * @param changed     The URLs whose checksum changed since the .zlc file was written, as found by
+     *                    getChangedData, or null to rebuild the file from scratch
+     * @param nonAffected The tests that getChangedData found not to be affected by the changes
+     */
     public static void updateZLCFile(Map<String, Set<String>> testDeps, ClassLoader loader,
                                      String artifactsDir, Set<String> unreached, boolean useThirdParty,
-                                     ZLCFormat format) {
-        // TODO: Optimize this by only recomputing the checksum+tests for changed classes and newly added tests
+                                     ZLCFormat format, int parallelism, Set<String> changed,
+                                     Set<String> nonAffected) {
         long start = System.currentTimeMillis();
         LOGGER.log(Level.FINE, "ZLC format: " + format.toString());
-        ZLCFileContent zlc = createZLCData(testDeps, loader, useThirdParty, format);
+        File oldZlc = new File(artifactsDir, zlcFile);
+        ZLCFileContent zlc = null;
+        ZLCStatIndex stats = null;
+        if (changed != null && isSameKind(oldZlc, format)) {
+            stats = ZLCStatIndex.create(ZLCStatIndex.load(artifactsDir));
+            zlc = mergeZLCData(oldZlc, testDeps, nonAffected, changed, loader, useThirdParty, format, stats);
+        }
+        if (zlc == null) {
+            stats = ZLCStatIndex.create(null);
+            ArrayList<String> testList = new ArrayList<>(testDeps.keySet());
+            zlc = createZLCData(testList, invertTestDeps(testList, testDeps), loader, useThirdParty, format,
+                    parallelism, null, stats);
+        }
+        writeZLCFile(zlc, stats, artifactsDir, start);
+    }
+
+    /**
+     * Write a .zlc file whose rows have the checksum of each of the given classes, but no tests. This is
+     * what we need when tests are selected by walking the saved dependency graph backwards from the
+     * changed classes, instead of by the tests that are stored in each row.
+     *
+     * @param deps    The classes to track, i.e., all classes that some test reaches, and the tests
+     * @param changed The URLs whose checksum changed since the .zlc file was written, or null to hash all
+     */
+    public static void updateZLCFileWithoutTests(Collection<String> deps, ClassLoader loader, String artifactsDir,
+                                                 boolean useThirdParty, ZLCFormat format, int parallelism,
+                                                 Set<String> changed) {
+        long start = System.currentTimeMillis();
+        LOGGER.log(Level.FINE, "ZLC format: " + format.toString());
+        Map<String, String> oldCheckSums = readUnchangedCheckSums(artifactsDir, changed, format);
+        Map<String, List<Integer>> depToTests = new HashMap<>();
+        for (String dep : deps) {
+            depToTests.put(dep, Collections.<Integer>emptyList());
+        }
+        ZLCStatIndex stats = ZLCStatIndex.create(oldCheckSums == null ? null : ZLCStatIndex.load(artifactsDir));
+        ZLCFileContent zlc = createZLCData(new ArrayList<String>(), depToTests, loader, useThirdParty, format,
+                parallelism, oldCheckSums, stats);
+        writeZLCFile(zlc, stats, artifactsDir, start);
+    }
+
+    /**
+     * Read the checksums in the existing .zlc file of the URLs that did not change.
+     *
+     * @return A map from URL to checksum, or null if every checksum needs to be computed
+     */
+    private static Map<String, String> readUnchangedCheckSums(String artifactsDir, Set<String> changed,
+                                                              ZLCFormat format) {
+        File oldZlc = new File(artifactsDir, zlcFile);
+        if (changed == null || !isSameKind(oldZlc, format)) {
+            return null;
+        }
+        Map<String, String> oldCheckSums = readCheckSums(oldZlc);
+        oldCheckSums.keySet().removeAll(changed);
+        return oldCheckSums;
+    }
+
+    /**
+     * Whether an existing .zlc file stores its checksums like a file of the given format does: the BINARY
+     * format stores them as numbers, from which the checksums of the other formats cannot be recovered.
+     */
+    private static boolean isSameKind(File oldZlc, ZLCFormat format) {
+        return oldZlc.exists() && ZLCBinaryFile.isBinary(oldZlc) == (format == ZLCFormat.BINARY);
+    }
+
+    private static void writeZLCFile(ZLCFileContent zlc, ZLCStatIndex stats, String artifactsDir, long start) {
         Writer.writeToFile(zlc, zlcFile, artifactsDir);
+        stats.save(artifactsDir);
         long end = System.currentTimeMillis();
         LOGGER.log(Level.FINE, "[PROFILE] updateForNextRun(updateZLCFile): " + Writer.millsToSeconds(end - start));
     }
@@ -98,72 +155,384 @@ public class ZLCHelper implements StartsConstants {
             ClassLoader loader,
             boolean useJars,
             ZLCFormat format
+    ) {
+        return createZLCData(testDeps, loader, useJars, format, 1);
+    }
+
+    /**
+     * Create one row per dependency, with the checksum of the dependency and the tests that reach it.
+     * We first invert testDeps into a map from each dependency to (the indexes of) the tests that reach
+     * it, so the cost is linear in the total size of the closures. With parallelism greater than one,
+     * the dependencies are split into shards whose URLs and checksums are computed in a ForkJoinPool.
+     *
+     * @param testDeps    The transitive closure of dependencies for each test
+     * @param loader      The classloader from which to find .class files
+     * @param useJars     Whether to track dependencies that are in jars
+     * @param format      The format of the .zlc file
+     * @param parallelism The number of threads with which to compute the rows
+     * @return            The content of the .zlc file
+     */
+    public static ZLCFileContent createZLCData(
+            Map<String, Set<String>> testDeps,
+            ClassLoader loader,
+            boolean useJars,
+            ZLCFormat format,
+            int parallelism
+    ) {
+        ArrayList<String> testList = new ArrayList<>(testDeps.keySet());  // all tests
+        return createZLCData(testList, invertTestDeps(testList, testDeps), loader, useJars, format, parallelism,
+                null, ZLCStatIndex.create(null));
+    }
+
+    private static ZLCFileContent createZLCData(
+            List<String> testList,
+            Map<String, List<Integer>> depToTests,
+            ClassLoader loader,
+            boolean useJars,
+            ZLCFormat format,
+            int parallelism,
+            Map<String, String> oldCheckSums,
+            ZLCStatIndex stats
     ) {
         long start = System.currentTimeMillis();
-        List<ZLCData> zlcData = new ArrayList<>();
-        Set<String> deps = new HashSet<>();
-        ChecksumUtil checksumUtil = new ChecksumUtil(true);
-        // merge all the deps for all tests into a single set
-        for (String test : testDeps.keySet()) {
-            deps.addAll(testDeps.get(test));
+        List<String> deps = new ArrayList<>(depToTests.keySet());
+        Map<String, String> reuse = oldCheckSums == null ? Collections.<String, String>emptyMap() : oldCheckSums;
+        ZLCShard shard = new ZLCShard(deps, 0, deps.size(), depToTests, testList, loader, useJars, format, reuse,
+                stats);
+        List<ZLCData> zlcData;
+        if (parallelism > 1 && deps.size() > ZLC_SHARD_SIZE) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                zlcData = pool.invoke(shard);
+            } finally {
+                pool.shutdown();
+            }
+        } else {
+            zlcData = shard.createRows();
         }
-        ArrayList<String> testList = new ArrayList<>(testDeps.keySet());  // all tests
+        if (oldCheckSums != null) {
+            int reused = 0;
+            for (ZLCData data : zlcData) {
+                if (reuse.containsKey(data.getUrl().toExternalForm())) {
+                    reused++;
+                }
+            }
+            LOGGER.log(Level.FINEST, "ZLC: reused " + reused + " of " + zlcData.size() + " checksums");
+        }
+        long end = System.currentTimeMillis();
+        LOGGER.log(Level.FINEST, "[TIME]CREATING ZLC FILE: " + (end - start) + MILLISECOND);
+        return new ZLCFileContent(testList, zlcData, format);
+    }
 
-        // for each dep, find it's url, checksum and tests that depend on it
-        for (String dep : deps) {
-            String klas = ChecksumUtil.toClassName(dep);
-            if (Types.isIgnorableInternalName(klas)) {
-                continue;
+    /**
+     * Merge the closures of the tests that may have changed into the rows of an existing .zlc file. A test
+     * that is not affected reaches no changed class, so its closure is the same as when the file was
+     * written, and we carry over its place in every row, along with the checksum of every row that did not
+     * change. The affected tests and the new tests are added from their current closures, which also adds
+     * rows for new classes. Tests that no longer exist are dropped, and so is every row that no test
+     * reaches anymore. The result equals that of createZLCData, up to the order of the rows.
+     *
+     * @return The content of the .zlc file, or null if the existing file could not be read
+     */
+    static ZLCFileContent mergeZLCData(File oldZlc, Map<String, Set<String>> testDeps, Set<String> nonAffected,
+                                       Set<String> changed, ClassLoader loader, boolean useJars,
+                                       ZLCFormat format, ZLCStatIndex stats) {
+        long start = System.currentTimeMillis();
+        Map<String, Pair<String, Set<String>>> oldRows = readRows(oldZlc);
+        if (oldRows == null) {
+            return null;
+        }
+        List<String> testList = new ArrayList<>(testDeps.keySet());
+        Map<String, Integer> testIndexes = new HashMap<>();
+        List<String> mergedTests = new ArrayList<>();
+        for (int i = 0; i < testList.size(); i++) {
+            testIndexes.put(testList.get(i), i);
+            if (!nonAffected.contains(testList.get(i))) {
+                mergedTests.add(testList.get(i));
+            }
+        }
+        // 1. carry over the tests whose closure did not change
+        Map<String, Set<Integer>> rowTests = new LinkedHashMap<>();
+        for (Map.Entry<String, Pair<String, Set<String>>> row : oldRows.entrySet()) {
+            Set<Integer> kept = new HashSet<>();
+            for (String test : row.getValue().getValue()) {
+                Integer index = testIndexes.get(test);
+                if (index != null && nonAffected.contains(test)) {
+                    kept.add(index);
+                }
+            }
+            if (!kept.isEmpty()) {
+                rowTests.put(row.getKey(), kept);
             }
-            URL url = loader.getResource(klas);
+        }
+        // 2. add the affected and new tests to the rows of their current closures
+        Map<String, List<Integer>> depToTests = invertTestDeps(mergedTests, testDeps);
+        for (Map.Entry<String, List<Integer>> dep : depToTests.entrySet()) {
+            URL url = getTrackedUrl(dep.getKey(), loader, useJars);
             if (url == null) {
                 continue;
             }
-            String extForm = url.toExternalForm();
-            if (ChecksumUtil.isWellKnownUrl(extForm) || (!useJars && extForm.startsWith("jar:"))) {
-                continue;
+            Set<Integer> tests = rowTests.get(url.toExternalForm());
+            if (tests == null) {
+                tests = new HashSet<>();
+                rowTests.put(url.toExternalForm(), tests);
             }
-            String checksum = checksumUtil.computeSingleCheckSum(url);
-            switch (format) {
-                case PLAIN_TEXT:
-                    Set<String> testsStr = new HashSet<>();
-                    for (String test: testDeps.keySet()) {
-                        if (testDeps.get(test).contains(dep)) {
-                            testsStr.add(test);
-                        }
-                    }
-                    zlcData.add(new ZLCData(url, checksum, format, testsStr, null));
-                    break;
-                case INDEXED:
-                    Set<Integer> testsIdx = new HashSet<>();
-                    for (int i = 0; i < testList.size(); i++) {
-                        if (testDeps.get(testList.get(i)).contains(dep)) {
-                            testsIdx.add(i);
-                        }
-                    }
-                    zlcData.add(new ZLCData(url, checksum, format, null, testsIdx));
-                    break;
-                default:
-                    throw new RuntimeException("Unexpected ZLCFormat");
+            for (int index : dep.getValue()) {
+                tests.add(testIndexes.get(mergedTests.get(index)));
+            }
+        }
+        // 3. compute the checksums of the rows that are new or changed
+        List<ZLCData> zlcData = new ArrayList<>();
+        ChecksumUtil checksumUtil = new ChecksumUtil(true);
+        int reused = 0;
+        try {
+            for (Map.Entry<String, Set<Integer>> row : rowTests.entrySet()) {
+                URL url = new URL(row.getKey());
+                Pair<String, Set<String>> oldRow = oldRows.get(row.getKey());
+                String checksum = oldRow == null || changed.contains(row.getKey()) ? null : oldRow.getKey();
+                if (checksum == null) {
+                    checksum = stats.computeCheckSum(row.getKey(), checksumUtil);
+                } else {
+                    stats.carryOver(row.getKey(), checksum);
+                    reused++;
+                }
+                zlcData.add(newRow(url, checksum, format, row.getValue(), testList));
             }
+        } catch (MalformedURLException mue) {
+            mue.printStackTrace();
+            return null;
         }
+        LOGGER.log(Level.FINEST, "ZLC: merged the closures of " + mergedTests.size() + " of " + testList.size()
+                + " tests");
+        LOGGER.log(Level.FINEST, "ZLC: reused " + reused + " of " + zlcData.size() + " checksums");
         long end = System.currentTimeMillis();
-        LOGGER.log(Level.FINEST, "[TIME]CREATING ZLC FILE: " + (end - start) + MILLISECOND);
+        LOGGER.log(Level.FINEST, "[TIME]MERGING ZLC FILE: " + (end - start) + MILLISECOND);
         return new ZLCFileContent(testList, zlcData, format);
     }
 
+    /**
+     * Map each dependency to the indexes (in testList) of the tests whose closure contains it, in one
+     * pass over testDeps. Closures that are backed by a graph are walked by id, so that we look up the
+     * name of every vertex once instead of hashing it again for every test that reaches it.
+     */
+    static Map<String, List<Integer>> invertTestDeps(List<String> testList, Map<String, Set<String>> testDeps) {
+        Map<String, List<Integer>> depToTests = new HashMap<>();
+        DependencyGraph graph = null;
+        List<Integer>[] testsById = null;
+        for (int i = 0; i < testList.size(); i++) {
+            Set<String> closure = testDeps.get(testList.get(i));
+            if (closure instanceof DependencyGraph.VertexSet
+                    && (graph == null || graph == ((DependencyGraph.VertexSet) closure).getGraph())) {
+                if (graph == null) {
+                    graph = ((DependencyGraph.VertexSet) closure).getGraph();
+                    testsById = newTestLists(graph.getVertexCount());
+                }
+                BitSet ids = ((DependencyGraph.VertexSet) closure).getIds();
+                for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                    if (testsById[id] == null) {
+                        testsById[id] = new ArrayList<>();
+                    }
+                    testsById[id].add(i);
+                }
+                continue;
+            }
+            for (String dep : closure) {
+                List<Integer> tests = depToTests.get(dep);
+                if (tests == null) {
+                    tests = new ArrayList<>();
+                    depToTests.put(dep, tests);
+                }
+                tests.add(i);
+            }
+        }
+        if (graph != null) {
+            for (int id = 0; id < testsById.length; id++) {
+                if (testsById[id] == null) {
+                    continue;
+                }
+                List<Integer> tests = depToTests.get(graph.getName(id));
+                if (tests == null) {
+                    depToTests.put(graph.getName(id), testsById[id]);
+                } else {
+                    // the same class was also reached through a closure that is not backed by the graph
+                    tests.addAll(testsById[id]);
+                    Collections.sort(tests);
+                }
+            }
+        }
+        return depToTests;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Integer>[] newTestLists(int size) {
+        return new List[size];
+    }
+
+    /**
+     * Splits a range of dependencies in halves until it is small enough, and creates the rows of each
+     * half in parallel. The rows are joined in the order of the dependencies.
+     */
+    private static class ZLCShard extends RecursiveTask<List<ZLCData>> {
+        private final List<String> deps;
+        private final int from;
+        private final int to;
+        private final Map<String, List<Integer>> depToTests;
+        private final List<String> testList;
+        private final ClassLoader loader;
+        private final boolean useJars;
+        private final ZLCFormat format;
+        private final Map<String, String> oldCheckSums;
+        private final ZLCStatIndex stats;
+
+        ZLCShard(List<String> deps, int from, int to, Map<String, List<Integer>> depToTests, List<String> testList,
+                 ClassLoader loader, boolean useJars, ZLCFormat format, Map<String, String> oldCheckSums,
+                 ZLCStatIndex stats) {
+            this.deps = deps;
+            this.from = from;
+            this.to = to;
+            this.depToTests = depToTests;
+            this.testList = testList;
+            this.loader = loader;
+            this.useJars = useJars;
+            this.format = format;
+            this.oldCheckSums = oldCheckSums;
+            this.stats = stats;
+        }
+
+        @Override
+        protected List<ZLCData> compute() {
+            if (to - from <= ZLC_SHARD_SIZE) {
+                return createRows();
+            }
+            int middle = (from + to) >>> 1;
+            ZLCShard left = new ZLCShard(deps, from, middle, depToTests, testList, loader, useJars, format,
+                    oldCheckSums, stats);
+            left.fork();
+            List<ZLCData> right = new ZLCShard(deps, middle, to, depToTests, testList, loader, useJars, format,
+                    oldCheckSums, stats).compute();
+            List<ZLCData> rows = left.join();
+            rows.addAll(right);
+            return rows;
+        }
+
+        /**
+         * Create the rows for deps[from .. to). Each shard uses its own ChecksumUtil, so that shards can run
+         * in parallel.
+         */
+        List<ZLCData> createRows() {
+            List<ZLCData> zlcData = new ArrayList<>();
+            ChecksumUtil checksumUtil = new ChecksumUtil(true);
+            // for each dep, find it's url, checksum and tests that depend on it
+            for (int d = from; d < to; d++) {
+                String dep = deps.get(d);
+                URL url = getTrackedUrl(dep, loader, useJars);
+                if (url == null) {
+                    continue;
+                }
+                String extForm = url.toExternalForm();
+                String checksum = oldCheckSums.get(extForm);
+                if (checksum == null) {
+                    checksum = stats.computeCheckSum(extForm, checksumUtil);
+                } else {
+                    stats.carryOver(extForm, checksum);
+                }
+                zlcData.add(newRow(url, checksum, format, depToTests.get(dep), testList));
+            }
+            return zlcData;
+        }
+    }
+
+    /**
+     * Find the URL of a dependency, if it is one that we track in the .zlc file.
+     *
+     * @return null for a class that is ignored, not found, well known, or in a jar when we do not track jars
+     */
+    private static URL getTrackedUrl(String dep, ClassLoader loader, boolean useJars) {
+        String klas = ChecksumUtil.toClassName(dep);
+        if (Types.isIgnorableInternalName(klas)) {
+            return null;
+        }
+        URL url = loader.getResource(klas);
+        if (url == null) {
+            return null;
+        }
+        String extForm = url.toExternalForm();
+        if (ChecksumUtil.isWellKnownUrl(extForm) || (!useJars && extForm.startsWith("jar:"))) {
+            return null;
+        }
+        return url;
+    }
+
+    private static ZLCData newRow(URL url, String checksum, ZLCFormat format, Collection<Integer> tests,
+                                  List<String> testList) {
+        switch (format) {
+            case PLAIN_TEXT:
+                Set<String> testsStr = new HashSet<>();
+                for (int index : tests) {
+                    testsStr.add(testList.get(index));
+                }
+                return new ZLCData(url, checksum, format, testsStr, null);
+            case INDEXED:
+            case BINARY:
+                return new ZLCData(url, checksum, format, null, new HashSet<>(tests));
+            default:
+                throw new RuntimeException("Unexpected ZLCFormat");
+        }
+    }
+
     public static Pair<Set<String>, Set<String>> getChangedData(String artifactsDir, boolean cleanBytes) {
+        return getChangedData(artifactsDir, cleanBytes, 1);
+    }
+
+    public static Pair<Set<String>, Set<String>> getChangedData(String artifactsDir, boolean cleanBytes,
+                                                                int parallelism) {
+        return getChangedData(artifactsDir, cleanBytes, parallelism, false);
+    }
+
+    /**
+     * Find the classes whose checksum changed since the .zlc file was written, and the tests that are
+     * not affected by those changes. We first parse all rows, then compute the new checksums (with
+     * parallelism threads, if more than one), and finally merge the results in the order of the rows,
+     * so the result does not depend on parallelism.
+     *
+     * @param artifactsDir The directory that contains the .zlc file
+     * @param cleanBytes   Whether to strip debug information from .class files before hashing them
+     * @param parallelism  The number of threads with which to compute the checksums
+     * @param paranoid     Whether to hash every file, even if its size and modification time did not change
+     * @return             The non-affected tests and the changed classes, or null on the first run
+     */
+    public static Pair<Set<String>, Set<String>> getChangedData(String artifactsDir, boolean cleanBytes,
+                                                                int parallelism, boolean paranoid) {
+        return getChangedData(artifactsDir, cleanBytes, parallelism, paranoid, Collections.<String>emptySet());
+    }
+
+    /**
+     * Like getChangedData, but a row for a class in a jar also counts as changed if the name of the class is
+     * in changedJarClasses, i.e., if a jar that has a class with that name was added, removed or changed on
+     * the classpath, so the class may now be loaded from a different jar (see ClassPathDiff).
+     */
+    public static Pair<Set<String>, Set<String>> getChangedData(String artifactsDir, boolean cleanBytes,
+                                                                int parallelism, boolean paranoid,
+                                                                Set<String> changedJarClasses) {
         long start = System.currentTimeMillis();
         File zlc = new File(artifactsDir, zlcFile);
         if (!zlc.exists()) {
             LOGGER.log(Level.FINEST, NOEXISTING_ZLCFILE_FIRST_RUN);
             return null;
         }
+        // the recorded checksums were computed with cleanBytes, so they are only valid with cleanBytes
+        ZLCStatIndex stats = paranoid || !cleanBytes ? null : ZLCStatIndex.load(artifactsDir);
+        if (ZLCBinaryFile.isBinary(zlc)) {
+            Pair<Set<String>, Set<String>> data = getChangedBinaryData(zlc, cleanBytes, parallelism, stats,
+                    changedJarClasses);
+            long end = System.currentTimeMillis();
+            LOGGER.log(Level.FINEST, TIME_COMPUTING_NON_AFFECTED + (end - start) + MILLISECOND);
+            return data;
+        }
         Set<String> changedClasses = new HashSet<>();
         Set<String> nonAffected = new HashSet<>();
         Set<String> affected = new HashSet<>();
         Set<String> starTests = new HashSet<>();
-        ChecksumUtil checksumUtil = new ChecksumUtil(cleanBytes);
         try {
             List<String> zlcLines = Files.readAllLines(zlc.toPath(), Charset.defaultCharset());
             String firstLine = zlcLines.get(0);
@@ -196,11 +565,12 @@ public class ZLCHelper implements StartsConstants {
                 testsList = new ArrayList<>(zlcLines.subList(1, testsCount + 1));
             }
 
+            List<String> stringURLs = new ArrayList<>();
+            List<String> oldCheckSums = new ArrayList<>();
+            List<Set<String>> rowTests = new ArrayList<>();
             for (int i = testsCount + 1; i < zlcLines.size(); i++) {
                 String line = zlcLines.get(i);
                 String[] parts = line.split(space);
-                String stringURL = parts[0];
-                String oldCheckSum = parts[1];
                 Set<String> tests;
                 if (format == ZLCFormat.INDEXED) {
                     Set<Integer> testsIdx = parts.length == 3 ? fromCSVToInt(parts[2]) : new HashSet<>();
@@ -208,12 +578,20 @@ public class ZLCHelper implements StartsConstants {
                 } else {
                     tests = parts.length == 3 ? fromCSV(parts[2]) : new HashSet<>();
                 }
+                stringURLs.add(parts[0]);
+                oldCheckSums.add(parts[1]);
+                rowTests.add(tests);
+            }
+
+            String[] newCheckSums = computeCheckSums(stringURLs, cleanBytes, parallelism, stats);
+            for (int i = 0; i < stringURLs.size(); i++) {
+                String url = stringURLs.get(i);
+                Set<String> tests = rowTests.get(i);
                 nonAffected.addAll(tests);
-                URL url = new URL(stringURL);
-                String newCheckSum = checksumUtil.computeSingleCheckSum(url);
-                if (!newCheckSum.equals(oldCheckSum)) {
+                String newCheckSum = newCheckSums[i];
+                if (!newCheckSum.equals(oldCheckSums.get(i)) || isInChangedJar(url, changedJarClasses)) {
                     affected.addAll(tests);
-                    changedClasses.add(stringURL);
+                    changedClasses.add(url);
                 }
                 if (newCheckSum.equals("-1")) {
                     // a class was deleted or auto-generated, no need to track it in zlc
@@ -234,6 +612,118 @@ public class ZLCHelper implements StartsConstants {
         return new Pair<>(nonAffected, changedClasses);
     }
 
+    /**
+     * The BINARY counterpart of getChangedData. Rows are read from the file with a cursor;
+     * tests are tracked as bitsets of their indexes, and their names are only looked up at the end.
+     */
+    private static Pair<Set<String>, Set<String>> getChangedBinaryData(File zlc, boolean cleanBytes,
+                                                                       int parallelism, ZLCStatIndex stats,
+                                                                       Set<String> changedJarClasses) {
+        Set<String> changedClasses = new HashSet<>();
+        Set<String> nonAffected = new HashSet<>();
+        try {
+            ZLCBinaryFile binary = new ZLCBinaryFile(zlc);
+            List<String> urls = new ArrayList<>(binary.getRowCount());
+            long[] oldCheckSums = new long[binary.getRowCount()];
+            int[] testsPositions = new int[binary.getRowCount()];
+            BitSet allTests = new BitSet();
+            while (binary.nextRow()) {
+                int row = urls.size();
+                urls.add(binary.getRowUrl());
+                oldCheckSums[row] = binary.getRowChecksum();
+                testsPositions[row] = binary.getRowTestsPosition();
+                binary.addTests(testsPositions[row], allTests);
+            }
+            String[] newCheckSums = computeCheckSums(urls, cleanBytes, parallelism, stats);
+            BitSet affected = new BitSet();
+            for (int i = 0; i < urls.size(); i++) {
+                if (ZLCBinaryFile.toLong(newCheckSums[i]) != oldCheckSums[i]
+                        || oldCheckSums[i] == ZLCBinaryFile.UNKNOWN_CHECKSUM
+                        || isInChangedJar(urls.get(i), changedJarClasses)) {
+                    binary.addTests(testsPositions[i], affected);
+                    changedClasses.add(urls.get(i));
+                }
+            }
+            allTests.andNot(affected);
+            List<String> tests = binary.getTests();
+            for (int test = allTests.nextSetBit(0); test >= 0; test = allTests.nextSetBit(test + 1)) {
+                nonAffected.add(tests.get(test));
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        return new Pair<>(nonAffected, changedClasses);
+    }
+
+    private static boolean isInChangedJar(String url, Set<String> changedJarClasses) {
+        if (changedJarClasses.isEmpty() || !url.startsWith("jar:")) {
+            return false;
+        }
+        for (String name : ReverseSelection.toClassNames(url)) {
+            if (changedJarClasses.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compute the checksum of every URL. With parallelism greater than one, the URLs are split into
+     * contiguous chunks that are hashed on a fixed pool of threads, each chunk with its own ChecksumUtil.
+     * A URL whose file has the size and modification time recorded in stats is not hashed again.
+     */
+    private static String[] computeCheckSums(final List<String> urls, final boolean cleanBytes, int parallelism,
+                                             final ZLCStatIndex stats) {
+        final String[] checksums = new String[urls.size()];
+        if (parallelism <= 1 || urls.size() < 2) {
+            computeCheckSums(urls, 0, urls.size(), new ChecksumUtil(cleanBytes), stats, checksums);
+            logHashed(checksums.length, stats);
+            return checksums;
+        }
+        int chunks = Math.min(urls.size(), parallelism * 4);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, chunks));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int c = 0; c < chunks; c++) {
+                final int from = (int) ((long) urls.size() * c / chunks);
+                final int to = (int) ((long) urls.size() * (c + 1) / chunks);
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        computeCheckSums(urls, from, to, new ChecksumUtil(cleanBytes), stats, checksums);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ie);
+        } catch (ExecutionException ee) {
+            throw new RuntimeException(ee.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        logHashed(checksums.length, stats);
+        return checksums;
+    }
+
+    private static void computeCheckSums(List<String> urls, int from, int to, ChecksumUtil checksumUtil,
+                                         ZLCStatIndex stats, String[] checksums) {
+        for (int i = from; i < to; i++) {
+            String checksum = stats == null ? null : stats.getUnchangedChecksum(urls.get(i));
+            checksums[i] = checksum != null ? checksum : checksumUtil.computeSingleCheckSum(urls.get(i));
+        }
+    }
+
+    private static void logHashed(int count, ZLCStatIndex stats) {
+        if (stats != null) {
+            LOGGER.log(Level.FINEST, "ZLC-STAT-INDEX: " + stats.getHits() + " of " + count
+                    + " checksums reused without hashing");
+        }
+    }
+
     private static Set<String> fromCSV(String tests) {
         return new HashSet<>(Arrays.asList(tests.split(COMMA)));
     }
@@ -242,6 +732,82 @@ public class ZLCHelper implements StartsConstants {
         return Arrays.stream(tests.split(COMMA)).map(Integer::parseInt).collect(Collectors.toSet());
     }
 
+    /**
+     * Read the checksum of every row of an existing .zlc file, in any format.
+     *
+     * @return A map from the URL of each row to its checksum
+     */
+    static Map<String, String> readCheckSums(File zlc) {
+        Map<String, String> checksums = new HashMap<>();
+        Map<String, Pair<String, Set<String>>> rows = readRows(zlc);
+        if (rows != null) {
+            for (Map.Entry<String, Pair<String, Set<String>>> row : rows.entrySet()) {
+                if (row.getValue().getKey() != null) {
+                    checksums.put(row.getKey(), row.getValue().getKey());
+                }
+            }
+        }
+        return checksums;
+    }
+
+    /**
+     * Read every row of an existing .zlc file, in any format.
+     *
+     * @return A map from the URL of each row to its checksum (null if it is unknown) and the names of its
+     *         tests, or null if the file cannot be read
+     */
+    static Map<String, Pair<String, Set<String>>> readRows(File zlc) {
+        Map<String, Pair<String, Set<String>>> rows = new LinkedHashMap<>();
+        try {
+            if (ZLCBinaryFile.isBinary(zlc)) {
+                ZLCBinaryFile binary = new ZLCBinaryFile(zlc);
+                List<String> tests = binary.getTests();
+                while (binary.nextRow()) {
+                    BitSet ids = new BitSet();
+                    binary.addTests(binary.getRowTestsPosition(), ids);
+                    Set<String> rowTests = new HashSet<>();
+                    for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+                        rowTests.add(tests.get(id));
+                    }
+                    String checksum = binary.getRowChecksum() == ZLCBinaryFile.UNKNOWN_CHECKSUM ? null
+                            : String.valueOf(binary.getRowChecksum());
+                    rows.put(binary.getRowUrl(), new Pair<>(checksum, rowTests));
+                }
+                return rows;
+            }
+            List<String> zlcLines = Files.readAllLines(zlc.toPath(), Charset.defaultCharset());
+            int first = 0;
+            if (first < zlcLines.size() && zlcLines.get(first).startsWith(STAR_FILE)) {
+                first++;
+            }
+            List<String> testList = null;
+            if (first < zlcLines.size() && zlcLines.get(first).equals(ZLCFormat.PLAIN_TEXT.toString())) {
+                first++;
+            } else if (first < zlcLines.size() && zlcLines.get(first).equals(ZLCFormat.INDEXED.toString())) {
+                int testsCount = Integer.parseInt(zlcLines.get(first + 1));
+                testList = zlcLines.subList(first + 2, first + 2 + testsCount);
+                first += testsCount + 2;
+            }
+            for (int i = first; i < zlcLines.size(); i++) {
+                String[] parts = zlcLines.get(i).split(WHITE_SPACE);
+                if (parts.length < 2) {
+                    continue;
+                }
+                Set<String> rowTests = new HashSet<>();
+                if (parts.length == 3) {
+                    for (String test : parts[2].split(COMMA)) {
+                        rowTests.add(testList == null ? test : testList.get(Integer.parseInt(test)));
+                    }
+                }
+                rows.put(parts[0], new Pair<>(parts[1], rowTests));
+            }
+        } catch (IOException | RuntimeException ex) {
+            ex.printStackTrace();
+            return null;
+        }
+        return rows;
+    }
+
     public static Set<String> getExistingClasses(String artifactsDir) {
         Set<String> existingClasses = new HashSet<>();
         long start = System.currentTimeMillis();
@@ -251,6 +817,15 @@ public class ZLCHelper implements StartsConstants {
             return existingClasses;
         }
         try {
+            if (ZLCBinaryFile.isBinary(zlc)) {
+                ZLCBinaryFile binary = new ZLCBinaryFile(zlc);
+                while (binary.nextRow()) {
+                    if (binary.getRowUrl().startsWith("file")) {
+                        existingClasses.add(Writer.urlToFQN(binary.getRowUrl()));
+                    }
+                }
+                return existingClasses;
+            }
             List<String> zlcLines = Files.readAllLines(zlc.toPath(), Charset.defaultCharset());
             for (String line : zlcLines) {
                 if (line.startsWith("file")) {
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.util.ChecksumUtil;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * A sidecar to deps.zlc that records the size and modification time of the file behind each URL
+ * (the .class file, or the jar that contains it) from just before its checksum was computed. While both
+ * are the same, the checksum in deps.zlc is still valid and we do not need to read and hash the file.
+ * Each line has the form "url size mtime checksum". A file that is modified while or after we hash it
+ * thus never matches its entry, and the checksum of a row that is carried over from the last deps.zlc
+ * keeps the entry that was recorded with it.
+ *
+ * <p>A file that was modified shortly before we recorded it could be modified again within the same
+ * timestamp granularity without changing its size, so we do not record such "racy" files; they are
+ * simply hashed again on the next run.
+ */
+public class ZLCStatIndex implements StartsConstants {
+    static final long RACY_WINDOW_MS = 2000;
+    private static final Logger LOGGER = Logger.getGlobal();
+    private static final String JAR_PREFIX = "jar:";
+    private static final String JAR_SEPARATOR = "!/";
+
+    private final Map<String, Entry> entries;
+    private final ZLCStatIndex previous;
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private ZLCStatIndex(Map<String, Entry> entries, ZLCStatIndex previous) {
+        this.entries = entries;
+        this.previous = previous;
+    }
+
+    /**
+     * Create an empty index for a new .zlc file, to which an entry is added for every checksum that is
+     * computed (computeCheckSum) or carried over from the last .zlc file (carryOver).
+     *
+     * @param previous The index of the last .zlc file, from which entries are carried over, or null
+     */
+    public static ZLCStatIndex create(ZLCStatIndex previous) {
+        return new ZLCStatIndex(new ConcurrentHashMap<String, Entry>(), previous);
+    }
+
+    /**
+     * Compute the checksum of a URL, and record the size and modification time that its file had before
+     * we read it. This is safe to call from multiple threads.
+     */
+    public String computeCheckSum(String url, ChecksumUtil checksumUtil) {
+        File file = toFile(url);
+        long size = file == null ? 0 : file.length();
+        long lastModified = file == null ? 0 : file.lastModified();
+        String checksum = checksumUtil.computeSingleCheckSum(url);
+        if (file != null && lastModified != 0 && System.currentTimeMillis() - lastModified >= RACY_WINDOW_MS) {
+            entries.put(url, new Entry(size, lastModified, checksum));
+        }
+        return checksum;
+    }
+
+    /**
+     * Keep the entry of the previous index for a checksum that we carry over from the last .zlc file
+     * instead of computing it again. This is safe to call from multiple threads.
+     */
+    public void carryOver(String url, String checksum) {
+        Entry entry = previous == null ? null : previous.entries.get(url);
+        if (entry != null && entry.checksum.equals(checksum)) {
+            entries.put(url, entry);
+        }
+    }
+
+    /**
+     * Load the index that was saved next to the .zlc file, or an empty index if there is none.
+     */
+    public static ZLCStatIndex load(String artifactsDir) {
+        Map<String, Entry> entries = new HashMap<>();
+        File indexFile = new File(artifactsDir, ZLCHelper.STAT_FILE);
+        if (!indexFile.exists()) {
+            return new ZLCStatIndex(entries, null);
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(WHITE_SPACE);
+                if (parts.length != 4) {
+                    continue;
+                }
+                entries.put(parts[0], new Entry(Long.parseLong(parts[1]), Long.parseLong(parts[2]), parts[3]));
+            }
+        } catch (IOException | NumberFormatException ex) {
+            ex.printStackTrace();
+            entries.clear();
+        }
+        LOGGER.log(Level.FINEST, "ZLC-STAT-INDEX: loaded " + entries.size() + " entries");
+        return new ZLCStatIndex(entries, null);
+    }
+
+    public void save(String artifactsDir) {
+        try (BufferedWriter writer = Writer.getWriter(Paths.get(artifactsDir, ZLCHelper.STAT_FILE).toString())) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry stat = entry.getValue();
+                writer.write(entry.getKey() + WHITE_SPACE + stat.size + WHITE_SPACE + stat.lastModified
+                        + WHITE_SPACE + stat.checksum + System.lineSeparator());
+            }
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+    }
+
+    /**
+     * Get the recorded checksum of a URL if the size and modification time of its file did not change.
+     * This is safe to call from multiple threads.
+     *
+     * @param url The URL of a class, as stored in the .zlc file
+     * @return    The recorded checksum, or null if the file has to be hashed
+     */
+    public String getUnchangedChecksum(String url) {
+        Entry entry = entries.get(url);
+        if (entry == null) {
+            return null;
+        }
+        File file = toFile(url);
+        if (file == null || file.length() != entry.size || file.lastModified() != entry.lastModified) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.checksum;
+    }
+
+    /**
+     * Get the number of checksums that getUnchangedChecksum returned so far.
+     */
+    public int getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the file whose metadata tells whether a URL changed: the .class file for "file:" URLs,
+     * and the jar for "jar:file:" URLs. Other URLs are always hashed.
+     */
+    private static File toFile(String url) {
+        String fileUrl = url;
+        if (url.startsWith(JAR_PREFIX)) {
+            int separator = url.indexOf(JAR_SEPARATOR);
+            if (separator < 0) {
+                return null;
+            }
+            fileUrl = url.substring(JAR_PREFIX.length(), separator);
+        }
+        if (!fileUrl.startsWith("file:")) {
+            return null;
+        }
+        try {
+            return Paths.get(new URI(fileUrl)).toFile();
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String checksum;
+
+        Entry(long size, long lastModified, String checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package edu.illinois.starts.maven;
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.lang.management.ManagementFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -122,6 +123,16 @@ public final class AgentLoader implements StartsConstants {
 
     public static StringWriter loadAndRunJdeps(List<String> args) {
         StringWriter output = new StringWriter();
+        loadAndRunJdeps(args, output);
+        return output;
+    }
+
+    /**
+     * Run jdeps with the given arguments, and print its output (and errors) to the given writer as
+     * jdeps produces them. The writer is flushed, but not closed.
+     */
+    public static void loadAndRunJdeps(List<String> args, Writer output) {
+        PrintWriter printer = new PrintWriter(output);
         try {
             File toolsJarFile = findToolsJar();
             if (!toolsJarFile.exists()) {
@@ -130,14 +141,14 @@ public final class AgentLoader implements StartsConstants {
                 Object jdeps = toolProvider.getMethod("findFirst", String.class).invoke(null, "jdeps");
                 jdeps = Optional.class.getMethod("get").invoke(jdeps);
                 toolProvider.getMethod("run", PrintWriter.class, PrintWriter.class, String[].class)
-                        .invoke(jdeps, new PrintWriter(output), new PrintWriter(output), args.toArray(new String[0]));
+                        .invoke(jdeps, printer, printer, args.toArray(new String[0]));
             } else {
                 // Java 8, load tools.jar
                 URLClassLoader loader = new URLClassLoader(new URL[] { toolsJarFile.toURI().toURL() },
                         ClassLoader.getSystemClassLoader());
                 Class<?> jdepsMain = loader.loadClass("com.sun.tools.jdeps.Main");
                 jdepsMain.getMethod("run", String[].class, PrintWriter.class)
-                        .invoke(null, args.toArray(new String[0]), new PrintWriter(output));
+                        .invoke(null, args.toArray(new String[0]), printer);
             }
         } catch (MalformedURLException malformedURLException) {
             malformedURLException.printStackTrace();
@@ -150,6 +161,6 @@ public final class AgentLoader implements StartsConstants {
         } catch (NoSuchMethodException noSuchMethodException) {
             noSuchMethodException.printStackTrace();
         }
-        return output;
+        printer.flush();
     }
 }
@@ -2,7 +2,6 @@ package edu.illinois.starts.maven;
 
 import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Level;
 
@@ -49,12 +48,36 @@ public final class SurefireMojoInterceptor extends AbstractMojoInterceptor imple
         }
     }
 
+    /**
+     * Apply the selection that RunMojo wrote (see SurefireSelection), unless it was written for another
+     * module. With excludes, the non-affected tests are added to the excludes of the user. With includes,
+     * the affected tests replace the includes of the user, which is fine, because RunMojo only selects among
+     * the tests that those includes select. RunMojo does not see an includesFile or a test parameter of the
+     * Surefire execution, though, so if either is set, we use the excludes instead. If no test of the module
+     * is affected, we may skip Surefire instead, as if the user set skipTests.
+     */
     private static void updateExcludes(Object mojo) throws Exception {
         LOGGER.log(Level.FINE, "updating Excludes");
+        SurefireSelection selection = SurefireSelection.read(new File(System.getProperty(STARTS_SELECTION_FILE)));
+        if (!selection.isFor((File) getField(BASEDIR_FIELD, mojo))) {
+            // the selection is left over from another module, in which RunMojo ran; we run all tests here
+            LOGGER.log(Level.FINE, "Ignoring the selection of STARTS for another module");
+            return;
+        }
+        if (selection.isSkip()) {
+            LOGGER.log(Level.INFO, "No tests are affected; skipping Surefire.");
+            setField(SKIP_TESTS_FIELD, mojo, true);
+            return;
+        }
         List<String> currentExcludes = getListField(EXCLUDES_FIELD, mojo);
-        // always use forward-slash as separator for Surefire's excludes field
-        List<String> newExcludes = new ArrayList<>(Arrays.asList(System.getProperty(STARTS_EXCLUDE_PROPERTY)
-                .replace("[", EMPTY).replace("]", EMPTY).replace(File.separator, "/").split(COMMA)));
+        List<String> newExcludes = new ArrayList<>();
+        if (selection.isInclude() && getFieldIfExists(INCLUDES_FILE_FIELD, mojo) == null
+                && getFieldIfExists(TEST_FIELD, mojo) == null) {
+            LOGGER.log(Level.FINE, "including " + selection.getIncludes().size() + " affected tests");
+            setField(INCLUDES_FIELD, mojo, selection.getIncludes());
+        } else {
+            newExcludes.addAll(selection.getExcludes());
+        }
         if (currentExcludes != null) {
             newExcludes.addAll(currentExcludes);
         } else {
@@ -62,4 +85,13 @@ public final class SurefireMojoInterceptor extends AbstractMojoInterceptor imple
         }
         setField(EXCLUDES_FIELD, mojo, newExcludes);
     }
+
+    private static Object getFieldIfExists(String fieldName, Object mojo) throws Exception {
+        try {
+            return getField(fieldName, mojo);
+        } catch (NoSuchFieldException nsfe) {
+            LOGGER.log(Level.FINEST, "This version of Surefire has no " + fieldName);
+            return null;
+        }
+    }
 }
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.maven;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.illinois.starts.constants.StartsConstants;
+
+/**
+ * The selection that RunMojo hands over to Surefire through a file, whose path is in the
+ * STARTS_SELECTION_FILE property: either the tests to exclude (the non-affected tests), or the tests to
+ * include (the affected tests), whichever list is shorter, as Surefire matches every test class that it
+ * scans against every pattern. With includes, the excludes are handed over as well, for a Surefire
+ * execution that selects tests by an includesFile or by the test parameter, which RunMojo does not see.
+ * If no test is affected, the selection may instead say to skip Surefire altogether.
+ *
+ * <p>The first line of the file says which, and the second line is the base directory of the module. The
+ * property is set for the rest of the JVM, so the base directory makes sure that a file that is left over
+ * from another module of the reactor, e.g., one in which RunMojo did not run, is never applied. Every
+ * other line is a pattern to include (prefixed with "+") or to exclude (prefixed with "-").
+ */
+public final class SurefireSelection implements StartsConstants {
+    public static final String FILE_NAME = "surefire-selection";
+    private static final String INCLUDES = "includes";
+    private static final String EXCLUDES = "excludes";
+    private static final String SKIP = "skip";
+    private static final String INCLUDE_PREFIX = "+";
+    private static final String EXCLUDE_PREFIX = "-";
+
+    private final String mode;
+    private final String basedir;
+    private final List<String> includes;
+    private final List<String> excludes;
+
+    private SurefireSelection(String mode, String basedir, List<String> includes, List<String> excludes) {
+        this.mode = mode;
+        this.basedir = basedir;
+        this.includes = includes;
+        this.excludes = excludes;
+    }
+
+    /**
+     * Exclude the given tests in the module with the given base directory.
+     */
+    public static SurefireSelection excludes(File basedir, List<String> excludes) {
+        return new SurefireSelection(EXCLUDES, basedir.getAbsolutePath(), new ArrayList<String>(), excludes);
+    }
+
+    /**
+     * Select the tests that run by the cheaper of the two lists. An empty list of affected tests is always
+     * handed over as excludes, because Surefire would use its default includes for an empty list.
+     *
+     * @param affected    The patterns of the tests to run
+     * @param nonAffected The patterns of the tests to skip
+     */
+    public static SurefireSelection cheaperOf(File basedir, List<String> affected, List<String> nonAffected) {
+        if (!affected.isEmpty() && affected.size() < nonAffected.size()) {
+            return new SurefireSelection(INCLUDES, basedir.getAbsolutePath(), affected, nonAffected);
+        }
+        return excludes(basedir, nonAffected);
+    }
+
+    /**
+     * Skip Surefire in the module with the given base directory, because none of its tests are affected.
+     */
+    public static SurefireSelection skip(File basedir) {
+        return new SurefireSelection(SKIP, basedir.getAbsolutePath(), new ArrayList<String>(),
+                new ArrayList<String>());
+    }
+
+    /**
+     * Whether the selection was made for the module with the given base directory.
+     */
+    public boolean isFor(File moduleBasedir) {
+        return moduleBasedir != null && basedir.equals(moduleBasedir.getAbsolutePath());
+    }
+
+    public boolean isInclude() {
+        return mode.equals(INCLUDES);
+    }
+
+    public boolean isSkip() {
+        return mode.equals(SKIP);
+    }
+
+    /**
+     * The patterns of the affected tests; only handed over with includes.
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * The patterns of the non-affected tests.
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public static SurefireSelection read(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        String mode = lines.isEmpty() ? EXCLUDES : lines.get(0);
+        String basedir = lines.size() > 1 ? lines.get(1) : EMPTY;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        for (int i = 2; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.startsWith(INCLUDE_PREFIX)) {
+                includes.add(line.substring(1));
+            } else if (line.startsWith(EXCLUDE_PREFIX)) {
+                excludes.add(line.substring(1));
+            }
+        }
+        return new SurefireSelection(mode, basedir, includes, excludes);
+    }
+
+    /**
+     * Write the selection, always with forward slashes as separators, as Surefire expects in its includes
+     * and excludes.
+     */
+    public void write(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        try (BufferedWriter writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+            writer.write(mode);
+            writer.newLine();
+            writer.write(basedir);
+            writer.newLine();
+            writePatterns(writer, INCLUDE_PREFIX, includes);
+            writePatterns(writer, EXCLUDE_PREFIX, excludes);
+        }
+    }
+
+    private static void writePatterns(BufferedWriter writer, String prefix, List<String> patterns)
+            throws IOException {
+        for (String pattern : patterns) {
+            writer.write(prefix + pattern.replace(File.separator, "/"));
+            writer.newLine();
+        }
+    }
+}
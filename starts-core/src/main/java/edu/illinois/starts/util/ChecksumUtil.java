@@ -21,6 +21,7 @@ import java.util.logging.Logger;
 import edu.illinois.starts.constants.StartsConstants;
 import org.ekstazi.data.RegData;
 import org.ekstazi.data.TxtStorer;
+import org.ekstazi.hash.BytecodeCleaner;
 import org.ekstazi.hash.Hasher;
 import org.ekstazi.util.Types;
 
@@ -28,12 +29,12 @@ public class ChecksumUtil implements StartsConstants {
     public static final String JAVAHOME = System.getProperty(JAVA_HOME);
     private static final Logger LOGGER = Logger.getLogger(ChecksumUtil.class.getName());
 
-    Hasher hasher;
+    BytesHasher hasher;
     private Map<URL, String> checkSumMap; // map from URL to checksums, to reduce hashing
 
     public ChecksumUtil(boolean cleanBytes) {
         checkSumMap = new HashMap<>();
-        hasher = new Hasher(Hasher.Algorithm.CRC32, 1000, cleanBytes);
+        hasher = new BytesHasher(cleanBytes);
     }
 
     /**
@@ -130,7 +131,32 @@ public class ChecksumUtil implements StartsConstants {
     }
 
     public String computeSingleCheckSum(URL url) {
-        return hasher.hashURL(url.toExternalForm());
+        return computeSingleCheckSum(url.toExternalForm());
+    }
+
+    public String computeSingleCheckSum(String externalForm) {
+        return hasher.hashURL(externalForm);
+    }
+
+    /**
+     * Compute the checksum of the bytes of a .class file that we already read, e.g., from an entry of a jar.
+     * The checksum is the same that computeSingleCheckSum gives for the URL of the file.
+     */
+    public String computeCheckSum(byte[] classBytes) {
+        return hasher.hashClassBytes(classBytes);
+    }
+
+    /**
+     * A Hasher that can also hash bytes that we already read, not just the file at a URL.
+     */
+    static class BytesHasher extends Hasher {
+        BytesHasher(boolean cleanBytes) {
+            super(Hasher.Algorithm.CRC32, 1000, cleanBytes);
+        }
+
+        String hashClassBytes(byte[] classBytes) {
+            return hashByteArray(mIsSemanticHashing ? BytecodeCleaner.removeDebugInfo(classBytes) : classBytes);
+        }
     }
 
     static class StartsStorer extends TxtStorer {
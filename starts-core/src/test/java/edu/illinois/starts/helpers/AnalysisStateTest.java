@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.illinois.starts.data.DependencyGraph;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AnalysisStateTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        AnalysisState.clear();
+    }
+
+    @Test
+    public void testStateIsKeptUntilClassPathChanges() throws Exception {
+        File jar = folder.newFile("lib.jar");
+        List<String> classPath = Arrays.asList(folder.newFolder("classes").getAbsolutePath(), jar.getAbsolutePath());
+        AnalysisState state = AnalysisState.forProject("project", classPath);
+        assertSame(state, AnalysisState.forProject("project", classPath));
+        assertNotSame(state, AnalysisState.forProject("other", classPath));
+        // a reordered classpath may shadow classes differently
+        List<String> reordered = Arrays.asList(classPath.get(1), classPath.get(0));
+        AnalysisState changed = AnalysisState.forProject("project", reordered);
+        assertNotSame(state, changed);
+        // a jar that is replaced under the same path
+        jar.setLastModified(jar.lastModified() - 10000);
+        assertNotSame(changed, AnalysisState.forProject("project", reordered));
+    }
+
+    @Test
+    public void testDroppedClassLoaderIsNotClosed() throws Exception {
+        File classes = folder.newFolder("classes");
+        folder.newFile("classes/resource.txt");
+        List<String> classPath = Arrays.asList(classes.getAbsolutePath());
+        URLClassLoader loader = new URLClassLoader(new URL[] {classes.toURI().toURL()}, null);
+        AnalysisState.forProject("project", classPath).setClassLoader(loader);
+        // another module may still be using the loader when the classpath changes
+        AnalysisState.forProject("project", Arrays.asList(folder.newFolder("other").getAbsolutePath()));
+        assertNotNull(loader.getResource("resource.txt"));
+        loader.close();
+    }
+
+    @Test
+    public void testLibraryEdgesAreCopied() {
+        AnalysisState state = AnalysisState.forProject("project", Arrays.asList("lib.jar"));
+        assertNull(state.getLibraryEdges("cache"));
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        builder.addEdge("lib.A", "lib.B");
+        state.setLibraryEdges("cache", builder);
+        builder.addEdge("my.FooTest", "lib.A");
+        assertNull(state.getLibraryEdges("other-cache"));
+        for (int run = 0; run < 2; run++) {
+            DependencyGraph.Builder kept = state.getLibraryEdges("cache");
+            kept.addEdge("my.BarTest", "lib.A");
+            DependencyGraph graph = kept.build();
+            assertEquals(3, graph.getVertexCount());
+            assertEquals(2, graph.getEdgeCount());
+            assertEquals(DependencyGraph.NO_ID, graph.getId("my.FooTest"));
+        }
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.asm.ClassReader;
+import edu.illinois.starts.data.ZLCData;
+import edu.illinois.starts.data.ZLCFileContent;
+import edu.illinois.starts.data.ZLCFormat;
+import edu.illinois.starts.util.Pair;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class AsmDepsExtractorTest {
+    public static Map<String, Set<String>> filteredDeps;
+    public static Map<String, Set<String>> allDeps;
+
+    @BeforeClass
+    public static void setUp() throws URISyntaxException {
+        String classesDir = new File(ZLCFileContent.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getAbsolutePath();
+        filteredDeps = new AsmDepsExtractor(true).getDepMap(Collections.singletonList(classesDir));
+        allDeps = new AsmDepsExtractor(false).getDepMap(Collections.singletonList(classesDir));
+    }
+
+    @Test
+    public void testDependenciesFromGenericSignatures() {
+        Set<String> expected = new HashSet<>();
+        expected.add(ZLCData.class.getName());
+        expected.add(ZLCFormat.class.getName());
+        assertEquals(expected, filteredDeps.get(ZLCFileContent.class.getName()));
+    }
+
+    @Test
+    public void testFilterLib() {
+        assertTrue(allDeps.get(ZLCFileContent.class.getName()).contains(String.class.getName()));
+        for (Set<String> deps : filteredDeps.values()) {
+            for (String dep : deps) {
+                assertFalse(dep.startsWith("java.") || dep.startsWith("sun."));
+            }
+        }
+    }
+
+    @Test
+    public void testNoSelfDependency() {
+        assertFalse(allDeps.get(Pair.class.getName()).contains(Pair.class.getName()));
+        assertTrue(allDeps.get(Pair.class.getName()).contains(Object.class.getName()));
+    }
+
+    @Test
+    public void testNewerClassVersionsOnlyForConstantPool() throws Exception {
+        byte[] bytes;
+        try (InputStream in = Pair.class.getResourceAsStream("Pair.class")) {
+            bytes = AsmDepsExtractor.readFully(in);
+        }
+        // major version 55 (Java 11)
+        bytes[6] = 0;
+        bytes[7] = 55;
+        try {
+            new ClassReader(bytes);
+            fail("The reader that may rewrite classes should reject versions newer than Java 8");
+        } catch (IllegalArgumentException iae) {
+            assertEquals(Pair.class.getName().replace('.', '/'), ClassReader.forConstantPool(bytes).getClassName());
+        }
+        Map<String, Set<String>> deps = new HashMap<>();
+        assertEquals(Pair.class.getName(), new AsmDepsExtractor(false).addClassDeps(bytes, deps));
+        assertEquals(allDeps.get(Pair.class.getName()), deps.get(Pair.class.getName()));
+    }
+}
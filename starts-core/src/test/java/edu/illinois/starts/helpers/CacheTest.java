@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.data.DependencyGraph;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hamcrest.Matcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String jarOf(Class<?> klass) throws URISyntaxException {
+        return new File(klass.getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+    }
+
+    private static List<String> listGraphs(File dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir.toPath())) {
+            return paths.filter(Files::isRegularFile).map(path -> dir.toPath().relativize(path).toString())
+                    .filter(path -> path.endsWith(".graph")).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private DependencyGraph load(File cacheDir, String classPath, int parallelism) {
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        new Cache(cacheDir, cacheDir.getParent(), parallelism).loadM2EdgesFromCache(classPath, builder);
+        return builder.build();
+    }
+
+    @Test
+    public void testParallelSameAsSequential() throws Exception {
+        String classPath = jarOf(Test.class) + File.pathSeparator + jarOf(Matcher.class);
+        File sequentialDir = folder.newFolder("sequential");
+        File parallelDir = folder.newFolder("parallel");
+        DependencyGraph sequential = load(sequentialDir, classPath, 1);
+        DependencyGraph parallel = load(parallelDir, classPath, 4);
+        assertTrue(sequential.getEdgeCount() > 0);
+        assertEquals(sequential.getVertexCount(), parallel.getVertexCount());
+        assertEquals(sequential.getEdgeCount(), parallel.getEdgeCount());
+        assertEquals(listGraphs(sequentialDir), listGraphs(parallelDir));
+        assertEquals(2, listGraphs(parallelDir).size());
+    }
+
+    @Test
+    public void testGraphsAreKeyedByContent() throws Exception {
+        File cacheDir = folder.newFolder("cache");
+        File firstRepo = folder.newFolder("repo1");
+        File secondRepo = folder.newFolder("repo2");
+        Path hamcrest = Paths.get(jarOf(Matcher.class));
+        Path firstJar = Files.copy(hamcrest, firstRepo.toPath().resolve("lib.jar"));
+        Path secondJar = Files.copy(hamcrest, secondRepo.toPath().resolve("lib.jar"));
+        DependencyGraph first = load(cacheDir, firstJar.toString(), 1);
+        List<String> graphs = listGraphs(cacheDir);
+        assertEquals(1, graphs.size());
+        // the same jar in another repository reuses the graph
+        DependencyGraph second = load(cacheDir, secondJar.toString(), 1);
+        assertEquals(graphs, listGraphs(cacheDir));
+        assertEquals(first.getEdgeCount(), second.getEdgeCount());
+        // a different jar under the same path gets its own graph
+        Files.copy(Paths.get(jarOf(Test.class)), firstJar, StandardCopyOption.REPLACE_EXISTING);
+        Files.setLastModifiedTime(firstJar, FileTime.fromMillis(firstJar.toFile().lastModified() - 10000));
+        DependencyGraph replaced = load(cacheDir, firstJar.toString(), 1);
+        assertEquals(2, listGraphs(cacheDir).size());
+        assertTrue(replaced.getEdgeCount() != first.getEdgeCount());
+    }
+
+    @Test
+    public void testRecentlyModifiedJarIsNotRecorded() throws Exception {
+        File cacheDir = folder.newFolder("cache");
+        Path jar = folder.newFolder("repo").toPath().resolve("lib.jar");
+        Files.copy(Paths.get(jarOf(Matcher.class)), jar);
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis()));
+        File index = new File(cacheDir, "jar-digests");
+        load(cacheDir, jar.toString(), 1);
+        assertTrue(!index.exists() || !new String(Files.readAllBytes(index.toPath())).contains(jar.toString()));
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis() - 60000));
+        load(cacheDir, jar.toString(), 1);
+        assertTrue(new String(Files.readAllBytes(index.toPath())).contains(jar.toString()));
+    }
+
+    private static Set<String> reachableFrom(DependencyGraph graph, String root) {
+        BitSet start = new BitSet();
+        start.set(graph.getId(root));
+        return new HashSet<>(graph.toVertexSet(graph.reachable(start, true)));
+    }
+
+    @Test
+    public void testLazyLoadingReachesSameClasses() throws Exception {
+        // the project only uses junit, which uses hamcrest; commons-codec is never reached
+        String classPath = jarOf(Test.class) + File.pathSeparator + jarOf(Matcher.class)
+                + File.pathSeparator + jarOf(DigestUtils.class);
+        Map<String, Set<String>> roots = new HashMap<>();
+        roots.put("my.FooTest", new HashSet<>(Arrays.asList("org.junit.Assert", "my.Foo")));
+        File cacheDir = folder.newFolder("cache");
+
+        DependencyGraph.Builder eagerBuilder = new DependencyGraph.Builder();
+        new Cache(cacheDir, cacheDir.getParent()).loadM2EdgesFromCache(classPath, eagerBuilder);
+        Loadables.addEdgeToGraphBuilder(eagerBuilder, "my.FooTest org.junit.Assert");
+        Loadables.addEdgeToGraphBuilder(eagerBuilder, "my.FooTest my.Foo");
+        DependencyGraph eager = eagerBuilder.build();
+
+        for (int run = 0; run < 2; run++) {
+            // the second run reads the class index from the cache
+            DependencyGraph.Builder lazyBuilder = new DependencyGraph.Builder();
+            new Cache(cacheDir, cacheDir.getParent()).loadReachableM2EdgesFromCache(classPath, roots, lazyBuilder);
+            Loadables.addEdgeToGraphBuilder(lazyBuilder, "my.FooTest org.junit.Assert");
+            Loadables.addEdgeToGraphBuilder(lazyBuilder, "my.FooTest my.Foo");
+            DependencyGraph lazy = lazyBuilder.build();
+            assertEquals(reachableFrom(eager, "my.FooTest"), reachableFrom(lazy, "my.FooTest"));
+            assertTrue(lazy.getEdgeCount() < eager.getEdgeCount());
+            assertEquals(DependencyGraph.NO_ID, lazy.getId(DigestUtils.class.getName()));
+        }
+        assertEquals(1, new File(cacheDir, "class-index").list().length);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClassPathDiffTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private String newJar(String name, String... classes) throws Exception {
+        File jar = new File(folder.getRoot(), name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (String klass : classes) {
+                out.putNextEntry(new ZipEntry(klass.replace('.', '/') + ".class"));
+                out.write(klass.getBytes(StandardCharsets.UTF_8));
+                out.closeEntry();
+            }
+        }
+        return jar.getAbsolutePath();
+    }
+
+    @Test
+    public void testChangedAddedAndRemovedJars() throws Exception {
+        String same = newJar("same.jar", "a.Same");
+        String changed = newJar("changed.jar", "b.Changed");
+        String removed = newJar("removed.jar", "c.Removed");
+        List<String> oldPaths = Arrays.asList(same, changed, removed);
+        JarChecksums oldChecksums = JarChecksums.compute(oldPaths, null, 1);
+
+        newJar("changed.jar", "b.Changed", "b.Added");
+        String added = newJar("added.jar", "d.New", "a.Same");
+        List<String> newPaths = Arrays.asList(same, added, changed);
+        JarChecksums newChecksums = JarChecksums.compute(newPaths, oldChecksums, 1);
+
+        ClassPathDiff diff = ClassPathDiff.compute(oldPaths, oldChecksums, newPaths, newChecksums);
+        assertTrue(diff.isAttributable());
+        assertEquals(new HashSet<>(Arrays.asList(added, changed, removed)), new HashSet<>(diff.getChangedJars()));
+        assertEquals(new HashSet<>(Arrays.asList("d.New", "a.Same", "b.Changed", "b.Added", "c.Removed")),
+                diff.getChangedClasses());
+    }
+
+    @Test
+    public void testReorderingIsNotAttributable() throws Exception {
+        String first = newJar("first.jar", "a.A");
+        String second = newJar("second.jar", "a.A");
+        List<String> oldPaths = Arrays.asList(first, second);
+        List<String> newPaths = Arrays.asList(second, first);
+        JarChecksums checksums = JarChecksums.compute(oldPaths, null, 1);
+        assertFalse(ClassPathDiff.compute(oldPaths, checksums, newPaths, checksums).isAttributable());
+    }
+
+    @Test
+    public void testDirectoriesAndMissingHistoryAreNotAttributable() throws Exception {
+        String jar = newJar("lib.jar", "a.A");
+        String dir = folder.newFolder("resources").getAbsolutePath();
+        List<String> oldPaths = Arrays.asList(jar);
+        List<String> newPaths = Arrays.asList(jar, dir);
+        JarChecksums checksums = JarChecksums.compute(newPaths, null, 1);
+        assertFalse(ClassPathDiff.compute(oldPaths, checksums, newPaths, checksums).isAttributable());
+        assertFalse(ClassPathDiff.compute(null, null, oldPaths, checksums).isAttributable());
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.illinois.starts.constants.StartsConstants;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarChecksumsTest implements StartsConstants {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File newJar(String name, String content) throws Exception {
+        File jar = folder.newFile(name);
+        Files.write(jar.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        // older than the window in which a jar is hashed again even with the same size and modification time
+        jar.setLastModified(System.currentTimeMillis() - 60000);
+        return jar;
+    }
+
+    @Test
+    public void testOnlyChangedJarsAreHashed() throws Exception {
+        File first = newJar("first.jar", "first");
+        File second = newJar("second.jar", "second");
+        List<String> classPath = Arrays.asList(first.getAbsolutePath(), second.getAbsolutePath());
+        String artifactsDir = folder.getRoot().getAbsolutePath();
+        assertNull(JarChecksums.read(artifactsDir));
+        JarChecksums checksums = JarChecksums.compute(classPath, null, 1);
+        checksums.write(artifactsDir);
+        JarChecksums old = JarChecksums.read(artifactsDir);
+        assertEquals(Writer.getJarToChecksumMapping(first.getAbsolutePath()).getValue(),
+                old.getChecksum(first.getAbsolutePath()));
+
+        // same size and modification time: the old checksum is kept without reading the jar
+        long modified = first.lastModified();
+        Files.write(first.toPath(), "FIRST".getBytes(StandardCharsets.UTF_8));
+        first.setLastModified(modified);
+        JarChecksums same = JarChecksums.compute(classPath, old, 2);
+        assertEquals(old.getChecksum(first.getAbsolutePath()), same.getChecksum(first.getAbsolutePath()));
+        // a new modification time: the jar is hashed again
+        first.setLastModified(modified - 10000);
+        JarChecksums changed = JarChecksums.compute(classPath, old, 2);
+        assertNotEquals(old.getChecksum(first.getAbsolutePath()), changed.getChecksum(first.getAbsolutePath()));
+        assertEquals(old.getChecksum(second.getAbsolutePath()), changed.getChecksum(second.getAbsolutePath()));
+    }
+
+    @Test
+    public void testOldFormatIsHashedAgain() throws Exception {
+        File jar = newJar("lib.jar", "lib");
+        String checksum = Writer.getJarToChecksumMapping(jar.getAbsolutePath()).getValue();
+        Files.write(new File(folder.getRoot(), JAR_CHECKSUMS).toPath(),
+                Arrays.asList(jar.getAbsolutePath() + COMMA + "stale"), StandardCharsets.UTF_8);
+        JarChecksums old = JarChecksums.read(folder.getRoot().getAbsolutePath());
+        assertEquals("stale", old.getChecksum(jar.getAbsolutePath()));
+        JarChecksums current = JarChecksums.compute(Arrays.asList(jar.getAbsolutePath()), old, 1);
+        assertEquals(checksum, current.getChecksum(jar.getAbsolutePath()));
+    }
+
+    @Test
+    public void testRecentlyModifiedJarIsHashedAgain() throws Exception {
+        File jar = newJar("lib.jar", "lib");
+        jar.setLastModified(System.currentTimeMillis());
+        List<String> classPath = Arrays.asList(jar.getAbsolutePath());
+        String artifactsDir = folder.getRoot().getAbsolutePath();
+        JarChecksums.compute(classPath, null, 1).write(artifactsDir);
+        JarChecksums old = JarChecksums.read(artifactsDir);
+
+        // rewritten within the timestamp granularity, with the same size
+        long modified = jar.lastModified();
+        Files.write(jar.toPath(), "LIB".getBytes(StandardCharsets.UTF_8));
+        jar.setLastModified(modified);
+        JarChecksums current = JarChecksums.compute(classPath, old, 1);
+        assertTrue(current.hasHashed());
+        assertNotEquals(old.getChecksum(jar.getAbsolutePath()), current.getChecksum(jar.getAbsolutePath()));
+    }
+
+    @Test
+    public void testUnchangedChecksumWithNewModificationTimeIsSaved() throws Exception {
+        File jar = newJar("lib.jar", "lib");
+        List<String> classPath = Arrays.asList(jar.getAbsolutePath());
+        String artifactsDir = folder.getRoot().getAbsolutePath();
+        JarChecksums.compute(classPath, null, 1).write(artifactsDir);
+
+        // e.g., a SNAPSHOT jar that was packaged again without a change
+        jar.setLastModified(jar.lastModified() - 10000);
+        JarChecksums repackaged = JarChecksums.compute(classPath, JarChecksums.read(artifactsDir), 1);
+        assertTrue(repackaged.hasHashed());
+        repackaged.write(artifactsDir);
+        assertFalse(JarChecksums.compute(classPath, JarChecksums.read(artifactsDir), 1).hasHashed());
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.data.DependencyGraph;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarGraphFileTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Map<String, Set<String>> deps = new HashMap<>();
+        deps.put("a.A", new HashSet<>(Arrays.asList("a.B", "java.lang.Object")));
+        deps.put("a.B", new HashSet<>(Arrays.asList("java.lang.Object", "b.Caf" + (char) 0xE9)));
+        File graph = new File(folder.getRoot(), "nested/a.graph");
+        JarGraphFile.write(deps, graph);
+        assertTrue(JarGraphFile.isBinary(graph));
+        assertEquals(1, folder.getRoot().toPath().resolve("nested").toFile().list().length);
+
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        assertEquals(4, JarGraphFile.addEdgesToGraphBuilder(graph, builder));
+        DependencyGraph loaded = builder.build();
+        assertEquals(4, loaded.getVertexCount());
+        assertEquals(4, loaded.getEdgeCount());
+        Map<String, Set<String>> edges = new HashMap<>();
+        for (int id = 0; id < loaded.getVertexCount(); id++) {
+            for (int index = loaded.getOutStart(id); index < loaded.getOutEnd(id); index++) {
+                String source = loaded.getName(id);
+                if (!edges.containsKey(source)) {
+                    edges.put(source, new HashSet<String>());
+                }
+                edges.get(source).add(loaded.getName(loaded.getOutTarget(index)));
+            }
+        }
+        assertEquals(deps, edges);
+    }
+
+    @Test
+    public void testTextGraphIsNotBinary() throws Exception {
+        File graph = folder.newFile("jdk.graph");
+        Writer.writeToFile(Arrays.asList("a.A java.lang.Object"), "jdk.graph", folder.getRoot().getAbsolutePath());
+        assertFalse(JarGraphFile.isBinary(graph));
+        assertFalse(JarGraphFile.isBinary(new File(folder.getRoot(), "missing.graph")));
+    }
+}
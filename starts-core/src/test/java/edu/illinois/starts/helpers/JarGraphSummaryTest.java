@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class JarGraphSummaryTest {
+    private static Set<String> reachable(Map<String, Set<String>> graph, String start) {
+        Set<String> reached = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Set<String> targets = graph.get(queue.poll());
+            if (targets != null) {
+                for (String target : targets) {
+                    if (reached.add(target)) {
+                        queue.add(target);
+                    }
+                }
+            }
+        }
+        return reached;
+    }
+
+    private static Set<String> vertices(Map<String, Set<String>> graph) {
+        Set<String> vertices = new HashSet<>();
+        for (Map.Entry<String, Set<String>> entry : graph.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                vertices.add(entry.getKey());
+                vertices.addAll(entry.getValue());
+            }
+        }
+        return vertices;
+    }
+
+    private static int edges(Map<String, Set<String>> graph) {
+        int count = 0;
+        for (Set<String> targets : graph.values()) {
+            count += targets.size();
+        }
+        return count;
+    }
+
+    private static void assertSameReachability(Map<String, Set<String>> deps, Map<String, Set<String>> summary) {
+        assertEquals(vertices(deps), vertices(summary));
+        for (String vertex : vertices(deps)) {
+            assertEquals(vertex, reachable(deps, vertex), reachable(summary, vertex));
+        }
+    }
+
+    @Test
+    public void testRedundantEdgesAndCyclesAreCondensed() {
+        Map<String, Set<String>> deps = new HashMap<>();
+        deps.put("a.A", new HashSet<>(Arrays.asList("a.B", "a.C", "java.lang.Object")));
+        deps.put("a.B", new HashSet<>(Arrays.asList("a.C", "java.lang.Object")));
+        deps.put("a.C", new HashSet<>(Arrays.asList("a.B", "java.lang.Object", "b.D")));
+        Map<String, Set<String>> summary = JarGraphSummary.summarize(deps);
+        assertSameReachability(deps, summary);
+        // A -> {B, C}, B <-> C, {B, C} -> Object, {B, C} -> D
+        assertEquals(5, edges(summary));
+    }
+
+    @Test
+    public void testRandomGraphsKeepReachability() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            Map<String, Set<String>> deps = new HashMap<>();
+            int size = 2 + random.nextInt(30);
+            int edgeCount = random.nextInt(size * 3);
+            for (int edge = 0; edge < edgeCount; edge++) {
+                String source = "c" + random.nextInt(size);
+                String target = "c" + random.nextInt(size);
+                if (!source.equals(target)) {
+                    if (!deps.containsKey(source)) {
+                        deps.put(source, new HashSet<String>());
+                    }
+                    deps.get(source).add(target);
+                }
+            }
+            Map<String, Set<String>> summary = JarGraphSummary.summarize(deps);
+            assertSameReachability(deps, summary);
+            assertTrue(edges(summary) <= edges(deps));
+        }
+    }
+}
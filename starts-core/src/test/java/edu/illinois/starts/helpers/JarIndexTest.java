@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import edu.illinois.starts.util.ChecksumUtil;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarIndexTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] classBytes(Class<?> klass) throws Exception {
+        String name = klass.getName().replace('.', '/') + ".class";
+        return AsmDepsExtractor.readFully(klass.getClassLoader().getResourceAsStream(name));
+    }
+
+    private String writeJar(String name, Map<String, byte[]> entries, long time) throws Exception {
+        File jar = new File(folder.getRoot(), name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                ZipEntry zipEntry = new ZipEntry(entry.getKey());
+                zipEntry.setTime(time);
+                out.putNextEntry(zipEntry);
+                out.write(entry.getValue());
+                out.closeEntry();
+            }
+        }
+        return jar.getAbsolutePath();
+    }
+
+    private Map<String, byte[]> entries(byte[] first, byte[] second, String resource) {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("a/First.class", first);
+        entries.put("a/Second.class", second);
+        entries.put("a/data.txt", resource.getBytes(StandardCharsets.UTF_8));
+        entries.put("META-INF/maven/a/a/pom.properties", String.valueOf(System.nanoTime())
+                .getBytes(StandardCharsets.UTF_8));
+        return entries;
+    }
+
+    @Test
+    public void testRepackagedJarKeepsItsChecksum() throws Exception {
+        byte[] first = classBytes(JarIndex.class);
+        byte[] second = classBytes(ClassPathDiff.class);
+        String jar = writeJar("lib.jar", entries(first, second, "data"), 1000000L);
+        JarIndex index = JarIndex.compute(jar, true);
+
+        Map<String, byte[]> reordered = new LinkedHashMap<>();
+        List<Map.Entry<String, byte[]>> list = new ArrayList<>(entries(first, second, "data").entrySet());
+        Collections.reverse(list);
+        for (Map.Entry<String, byte[]> entry : list) {
+            reordered.put(entry.getKey(), entry.getValue());
+        }
+        String repackaged = writeJar("repackaged.jar", reordered, 2000000L);
+        JarIndex other = JarIndex.compute(repackaged, true);
+        assertEquals(index.getChecksum(), other.getChecksum());
+        assertEquals(Collections.emptySet(), other.getChangedClasses(index));
+    }
+
+    @Test
+    public void testChangedEntries() throws Exception {
+        byte[] first = classBytes(JarIndex.class);
+        byte[] second = classBytes(ClassPathDiff.class);
+        JarIndex index = JarIndex.compute(writeJar("old.jar", entries(first, second, "data"), 0L), true);
+        JarIndex changedClass = JarIndex.compute(writeJar("class.jar", entries(first, first, "data"), 0L), true);
+        assertNotEquals(index.getChecksum(), changedClass.getChecksum());
+        assertEquals(Collections.singleton("a.Second"), changedClass.getChangedClasses(index));
+        JarIndex changedResource = JarIndex.compute(writeJar("res.jar", entries(first, second, "other"), 0L), true);
+        assertNull(changedResource.getChangedClasses(index));
+    }
+
+    @Test
+    public void testClassesAreHashedLikeZlcRows() throws Exception {
+        byte[] first = classBytes(JarIndex.class);
+        String jar = writeJar("lib.jar", entries(first, first, "data"), 0L);
+        JarIndex index = JarIndex.compute(jar, true);
+        index.write(folder.getRoot().getAbsolutePath(), jar);
+        JarIndex read = JarIndex.read(folder.getRoot().getAbsolutePath(), jar);
+        assertEquals(index.getChecksum(), read.getChecksum());
+
+        String url = "jar:" + new File(jar).toURI().toURL().toExternalForm() + "!/a/First.class";
+        String rowChecksum = new ChecksumUtil(true).computeSingleCheckSum(url);
+        assertEquals(new ChecksumUtil(true).computeCheckSum(first), rowChecksum);
+    }
+
+    @Test
+    public void testEntryChecksumsAreSavedWithJarChecksums() throws Exception {
+        byte[] first = classBytes(JarIndex.class);
+        byte[] second = classBytes(ClassPathDiff.class);
+        String jar = writeJar("lib.jar", entries(first, second, "data"), 0L);
+        String artifactsDir = folder.newFolder("artifacts").getAbsolutePath();
+        JarChecksums.compute(Arrays.asList(jar), null, 1, true, true).write(artifactsDir);
+        JarChecksums old = JarChecksums.read(artifactsDir);
+
+        writeJar("lib.jar", entries(second, second, "data"), 0L);
+        new File(jar).setLastModified(new File(jar).lastModified() - 10000);
+        JarChecksums current = JarChecksums.compute(Arrays.asList(jar), old, 1, true, true);
+        ClassPathDiff diff = ClassPathDiff.compute(Arrays.asList(jar), old, Arrays.asList(jar), current);
+        assertEquals(Collections.singleton("a.First"), diff.getChangedClasses());
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class JdepsOutputParserTest {
+    private static final String OUTPUT = "classes -> /usr/lib/jvm/jre/lib/rt.jar\n"
+            + "   inter.Child                                        -> inter.Base                        classes\n"
+            + "   inter.Child                                        -> java.util.Set                     rt.jar\n"
+            + "test-classes -> classes\n"
+            + "   inter.ChildTest                                    -> inter.Child                       classes\r\n"
+            + "Warning: split package: inter\n"
+            + "lib.jar -> not found\n"
+            + "   inter.ChildTest -> inter.Base";
+
+    private static Map<String, Set<String>> expected() {
+        Map<String, Set<String>> deps = new HashMap<>();
+        deps.put("inter.Child", new HashSet<>(Arrays.asList("inter.Base", "java.util.Set")));
+        deps.put("inter.ChildTest", new HashSet<>(Arrays.asList("inter.Child", "inter.Base")));
+        return deps;
+    }
+
+    @Test
+    public void testParseInChunks() {
+        for (int chunk = 1; chunk <= OUTPUT.length(); chunk += 7) {
+            JdepsOutputParser parser = new JdepsOutputParser();
+            for (int i = 0; i < OUTPUT.length(); i += chunk) {
+                char[] chars = OUTPUT.substring(i, Math.min(OUTPUT.length(), i + chunk)).toCharArray();
+                parser.write(chars, 0, chars.length);
+            }
+            parser.close();
+            assertEquals(expected(), parser.getDeps());
+        }
+    }
+
+    @Test
+    public void testNamesAreShared() {
+        JdepsOutputParser parser = new JdepsOutputParser();
+        parser.write(OUTPUT);
+        parser.close();
+        String child = null;
+        for (String key : parser.getDeps().keySet()) {
+            if (key.equals("inter.Child")) {
+                child = key;
+            }
+        }
+        for (String dep : parser.getDeps().get("inter.ChildTest")) {
+            if (dep.equals("inter.Child")) {
+                assertSame(child, dep);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyOutput() {
+        JdepsOutputParser parser = new JdepsOutputParser();
+        parser.close();
+        assertTrue(parser.isEmpty());
+        assertTrue(parser.getDeps().isEmpty());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.data.ZLCFileContent;
+import edu.illinois.starts.enums.DependencyExtractor;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class LoadablesTest {
+    public static String classesDir;
+
+    @BeforeClass
+    public static void setUp() throws URISyntaxException {
+        classesDir = new File(ZLCFileContent.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getAbsolutePath();
+    }
+
+    private static Map<String, Set<String>> extract(int depShards) {
+        Loadables loadables = new Loadables(Collections.<String>emptyList(), null, classesDir, false, true, null);
+        loadables.setDepExtractor(DependencyExtractor.ASM);
+        loadables.setDepShards(depShards);
+        return loadables.extractDeps(Collections.singletonList(classesDir), classesDir, false);
+    }
+
+    @Test
+    public void testShardsKeepPackagesTogether() {
+        List<List<String>> shards = Loadables.splitIntoShards(Collections.singletonList(classesDir), 3);
+        assertEquals(3, shards.size());
+        Set<String> seen = new HashSet<>();
+        for (List<String> shard : shards) {
+            Set<String> packages = new HashSet<>();
+            for (String classFile : shard) {
+                assertTrue(classFile.endsWith(".class"));
+                packages.add(new File(classFile).getParent());
+            }
+            for (String pkg : packages) {
+                assertTrue("package in two shards: " + pkg, seen.add(pkg));
+            }
+        }
+    }
+
+    @Test
+    public void testShardedSameAsUnsharded() {
+        assertEquals(extract(1), extract(4));
+    }
+}
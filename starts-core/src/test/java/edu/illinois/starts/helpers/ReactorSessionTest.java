@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.data.ZLCFileContent;
+import edu.illinois.starts.enums.DependencyExtractor;
+import org.apache.maven.surefire.booter.Classpath;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReactorSessionTest {
+    public static String classesDir;
+    public static String testClassesDir;
+
+    // the settings of the Loadables in getDepMap
+    private static final String SETTINGS = "ASM true";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @BeforeClass
+    public static void setUp() throws URISyntaxException {
+        classesDir = new File(ZLCFileContent.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                .getAbsolutePath();
+        testClassesDir = new File(ReactorSessionTest.class.getProtectionDomain().getCodeSource().getLocation()
+                .toURI()).getAbsolutePath();
+    }
+
+    private Map<String, Set<String>> getDepMap(List<String> paths, ReactorSession session) {
+        Loadables loadables = new Loadables(Collections.singletonList("edu.illinois.starts.helpers.LoadablesTest"),
+                null, Writer.pathToString(paths), false, true, folder.getRoot());
+        loadables.setDepExtractor(DependencyExtractor.ASM);
+        loadables.setSurefireClasspath(new Classpath(paths));
+        loadables.setReactorSession(session);
+        return loadables.getDepMap(Writer.pathToString(paths), Collections.singletonList("LoadablesTest"));
+    }
+
+    @Test
+    public void testSameDepsAsWithoutSession() {
+        List<String> paths = Arrays.asList(testClassesDir, classesDir);
+        ReactorSession session = ReactorSession.forBuild("same", Collections.<String>emptyList());
+        assertEquals(getDepMap(paths, null), getDepMap(paths, session));
+    }
+
+    @Test
+    public void testElementsAreExtractedOnce() {
+        ReactorSession session = ReactorSession.forBuild("once", Collections.<String>emptyList());
+        getDepMap(Collections.singletonList(classesDir), session);
+        Map<String, Set<String>> upstream = session.getDeps(classesDir, SETTINGS);
+        assertNotNull(upstream);
+        assertNull(session.getDeps(testClassesDir, SETTINGS));
+        // a downstream module reuses the classes of the upstream module
+        getDepMap(Arrays.asList(testClassesDir, classesDir), session);
+        assertSame(upstream, session.getDeps(classesDir, SETTINGS));
+        assertNotNull(session.getDeps(testClassesDir, SETTINGS));
+        assertSame(session, ReactorSession.forBuild("once", Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testDepsAreNotSharedAcrossSettings() {
+        ReactorSession session = ReactorSession.forBuild("settings", Collections.<String>emptyList());
+        getDepMap(Collections.singletonList(classesDir), session);
+        assertNotNull(session.getDeps(classesDir, SETTINGS));
+        // a module that extracts with jdeps, or without filterLib, extracts the element again
+        assertNull(session.getDeps(classesDir, "JDEPS true"));
+        assertNull(session.getDeps(classesDir, "ASM false"));
+    }
+
+    @Test
+    public void testChangedElementIsExtractedAgain() throws Exception {
+        File module = folder.newFolder("module");
+        File classFile = new File(classesDir, ZLCFileContent.class.getName().replace('.', '/') + ".class");
+        Files.copy(classFile.toPath(), new File(module, "ZLCFileContent.class").toPath());
+        ReactorSession session = ReactorSession.forBuild("changed", Collections.<String>emptyList());
+        getDepMap(Collections.singletonList(module.getAbsolutePath()), session);
+        assertNotNull(session.getDeps(module.getAbsolutePath(), SETTINGS));
+        Files.copy(classFile.toPath(), new File(module, "Copy.class").toPath());
+        assertNull(session.getDeps(module.getAbsolutePath(), SETTINGS));
+    }
+
+    @Test
+    public void testJarsOfReactorModulesAreLocal() throws Exception {
+        File target = folder.newFolder("sibling", "target");
+        File reactorJar = new File(target, "sibling.jar");
+        File libraryJar = folder.newFile("library.jar");
+        Files.copy(libraryJar.toPath(), reactorJar.toPath());
+        ReactorSession session = ReactorSession.forBuild("jars", Collections.singletonList(target.getPath()));
+        assertTrue(session.isReactorElement(reactorJar.getPath()));
+        assertFalse(session.isReactorElement(libraryJar.getPath()));
+
+        Loadables loadables = new Loadables(Collections.<String>emptyList(), null, null, false, true, null);
+        loadables.setSurefireClasspath(new Classpath(Arrays.asList(classesDir, reactorJar.getPath(),
+                libraryJar.getPath())));
+        assertEquals(Collections.singletonList(classesDir), loadables.getClasspathWithNoJars());
+        loadables.setReactorSession(session);
+        assertEquals(Arrays.asList(classesDir, reactorJar.getPath()), loadables.getClasspathWithNoJars());
+    }
+}
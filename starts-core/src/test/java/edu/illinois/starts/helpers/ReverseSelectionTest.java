@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import edu.illinois.starts.data.DependencyGraph;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReverseSelectionTest {
+    private static final String CLASSES_URL = "file:/project/target/classes/";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static String toUrl(String className) {
+        return CLASSES_URL + className.replace('.', '/') + ".class";
+    }
+
+    private ReverseSelection saveAndLoad(DependencyGraph graph, List<String> tests) {
+        String artifactsDir = folder.getRoot().getAbsolutePath();
+        ReverseSelection.save(artifactsDir, graph, tests);
+        return ReverseSelection.load(artifactsDir);
+    }
+
+    @Test
+    public void testSelectsReverseCone() {
+        DependencyGraph graph = TransitiveClosureTest.makeGraph(new String[] {"p.T1 p.A", "p.A p.B", "p.T2 p.B",
+            "p.T3 p.C"});
+        ReverseSelection selection = saveAndLoad(graph, Arrays.asList("p.T1", "p.T2", "p.T3", "p.T4"));
+        Set<String> changed = Collections.singleton(toUrl("p.B"));
+        // T5 is new since the last run, so it is affected; T4 is not in the graph and did not change
+        Set<String> nonAffected = selection.getNonAffectedTests(changed,
+                Arrays.asList("p.T1", "p.T2", "p.T3", "p.T4", "p.T5"));
+        assertEquals(new HashSet<>(Arrays.asList("p.T3", "p.T4")), nonAffected);
+        nonAffected = selection.getNonAffectedTests(Collections.singleton(toUrl("p.T4")),
+                Arrays.asList("p.T1", "p.T2", "p.T3", "p.T4"));
+        assertEquals(new HashSet<>(Arrays.asList("p.T1", "p.T2", "p.T3")), nonAffected);
+    }
+
+    @Test
+    public void testSameAsClosures() {
+        Random random = new Random(42);
+        List<String> edges = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            edges.add("p.v" + random.nextInt(200) + " p.v" + random.nextInt(200));
+        }
+        DependencyGraph graph = TransitiveClosureTest.makeGraph(edges.toArray(new String[0]));
+        List<String> tests = new ArrayList<>();
+        for (int i = 0; i < 200; i += 3) {
+            tests.add("p.v" + i);
+        }
+        Map<String, Set<String>> closures = Loadables.getTransitiveClosurePerClass(graph, tests);
+        ReverseSelection selection = saveAndLoad(graph, tests);
+        for (int i = 0; i < 200; i += 7) {
+            Set<String> expected = new HashSet<>();
+            for (String test : tests) {
+                if (!closures.get(test).contains("p.v" + i)) {
+                    expected.add(test);
+                }
+            }
+            assertEquals(expected, selection.getNonAffectedTests(Collections.singleton(toUrl("p.v" + i)), tests));
+        }
+    }
+
+    @Test
+    public void testReachedClassesIncludeTestsOutsideGraph() {
+        DependencyGraph graph = TransitiveClosureTest.makeGraph(new String[] {"T1 A", "A B", "C D"});
+        assertEquals(new HashSet<>(Arrays.asList("T1", "A", "B", "T2")),
+                new HashSet<>(ReverseSelection.getReachedClasses(graph, Arrays.asList("T1", "T2"))));
+    }
+
+    @Test
+    public void testClassNamesFromUrls() {
+        assertEquals(Collections.singleton("org.lib.Foo$Bar"),
+                ReverseSelection.toClassNames("jar:file:/m2/lib.jar!/org/lib/Foo$Bar.class"));
+        assertEquals(new HashSet<>(Arrays.asList("C", "q.C", "p.q.C", "classes.p.q.C")),
+                ReverseSelection.toClassNames("file:/classes/p/q/C.class"));
+    }
+
+    @Test
+    public void testNoSavedGraph() {
+        assertNull(ReverseSelection.load(folder.getRoot().getAbsolutePath()));
+    }
+}
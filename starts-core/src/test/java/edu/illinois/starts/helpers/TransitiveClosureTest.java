@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import edu.illinois.starts.data.DependencyGraph;
+import org.junit.Test;
+
+public class TransitiveClosureTest {
+
+    public static DependencyGraph makeGraph(String[] edges) {
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        Loadables.addEdgesToGraphBuilder(builder, Arrays.asList(edges));
+        return builder.build();
+    }
+
+    public static Map<String, Set<String>> makeAdjacency(String[] edges) {
+        Map<String, Set<String>> adjacency = new HashMap<>();
+        for (String edge : edges) {
+            String[] parts = edge.split(" ");
+            Set<String> targets = adjacency.get(parts[0]);
+            if (targets == null) {
+                targets = new HashSet<>();
+                adjacency.put(parts[0], targets);
+            }
+            targets.add(parts[1]);
+        }
+        return adjacency;
+    }
+
+    public static Set<String> bfsClosure(String test, Map<String, Set<String>> adjacency) {
+        Set<String> deps = new HashSet<>();
+        List<String> queue = new ArrayList<>(Arrays.asList(test));
+        deps.add(test);
+        for (int i = 0; i < queue.size(); i++) {
+            Set<String> targets = adjacency.get(queue.get(i));
+            if (targets == null) {
+                continue;
+            }
+            for (String target : targets) {
+                if (deps.add(target)) {
+                    queue.add(target);
+                }
+            }
+        }
+        return deps;
+    }
+
+    @Test
+    public void testCyclesShareClosure() {
+        String[] edges = {"T1 A", "A B", "B A", "B C", "T2 B", "C D", "T3 D"};
+        DependencyGraph graph = makeGraph(edges);
+        Map<String, Set<String>> closure = Loadables.getTransitiveClosurePerClass(graph,
+                Arrays.asList("T1", "T2", "T3", "A", "B"));
+        assertEquals(new HashSet<>(Arrays.asList("T1", "A", "B", "C", "D")), closure.get("T1"));
+        assertEquals(new HashSet<>(Arrays.asList("T2", "A", "B", "C", "D")), closure.get("T2"));
+        assertEquals(new HashSet<>(Arrays.asList("T3", "D")), closure.get("T3"));
+        assertSame(closure.get("A"), closure.get("B"));
+    }
+
+    @Test
+    public void testRootNotInGraph() {
+        DependencyGraph graph = makeGraph(new String[] {"A B"});
+        Map<String, Set<String>> closure = Loadables.getTransitiveClosurePerClass(graph, Arrays.asList("T"));
+        assertEquals(Collections.singleton("T"), closure.get("T"));
+    }
+
+    @Test
+    public void testSameAsBreadthFirstSearch() {
+        Random random = new Random(42);
+        List<String> edges = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+            edges.add("v" + random.nextInt(200) + " v" + random.nextInt(200));
+        }
+        String[] edgeArray = edges.toArray(new String[0]);
+        DependencyGraph graph = makeGraph(edgeArray);
+        Map<String, Set<String>> adjacency = makeAdjacency(edgeArray);
+        Set<String> vertices = new HashSet<>();
+        int edgeCount = 0;
+        for (Map.Entry<String, Set<String>> entry : adjacency.entrySet()) {
+            vertices.add(entry.getKey());
+            vertices.addAll(entry.getValue());
+            edgeCount += entry.getValue().size();
+        }
+        assertEquals(vertices.size(), graph.getVertexCount());
+        assertEquals(edgeCount, graph.getEdgeCount());
+        List<String> tests = new ArrayList<>();
+        for (int i = 0; i < 200; i += 3) {
+            tests.add("v" + i);
+        }
+        Map<String, Set<String>> closure = Loadables.getTransitiveClosurePerClass(graph, tests);
+        for (String test : tests) {
+            assertEquals(bfsClosure(test, adjacency), closure.get(test));
+        }
+    }
+}
@@ -22,8 +22,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import edu.illinois.yasgl.DirectedGraph;
-import edu.illinois.yasgl.DirectedGraphBuilder;
+import edu.illinois.starts.data.DependencyGraph;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -41,12 +40,12 @@ public class WriterTest {
     private static Writer writer;
 
     public static void writeToGraph(String[] edges) {
-        DirectedGraphBuilder<String> builder = new DirectedGraphBuilder<String>();
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
         for (int i = 0; i < edges.length; i++) {
             String[] nodes = edges[i].split(",");
             builder.addEdge(nodes[0], nodes[1]);
         }
-        DirectedGraph<String> graph = builder.build();
+        DependencyGraph graph = builder.build();
         writer.writeGraph(graph, ARTIFACTDIR, true, TEST_FILE_PATH);
     }
 
@@ -0,0 +1,306 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.helpers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.illinois.starts.data.DependencyGraph;
+import edu.illinois.starts.data.ZLCData;
+import edu.illinois.starts.data.ZLCFileContent;
+import edu.illinois.starts.data.ZLCFormat;
+import edu.illinois.starts.util.ChecksumUtil;
+import edu.illinois.starts.util.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ZLCHelperTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    public static Map<String, List<Integer>> invertByContains(List<String> testList,
+                                                              Map<String, Set<String>> testDeps) {
+        Map<String, List<Integer>> depToTests = new HashMap<>();
+        for (Set<String> closure : testDeps.values()) {
+            for (String dep : closure) {
+                List<Integer> tests = new ArrayList<>();
+                for (int i = 0; i < testList.size(); i++) {
+                    if (testDeps.get(testList.get(i)).contains(dep)) {
+                        tests.add(i);
+                    }
+                }
+                depToTests.put(dep, tests);
+            }
+        }
+        return depToTests;
+    }
+
+    @Test
+    public void testInvertGraphBackedClosures() {
+        String[] edges = {"T1 A", "A B", "B A", "B C", "T2 B", "C D", "T3 D"};
+        DependencyGraph graph = TransitiveClosureTest.makeGraph(edges);
+        Map<String, Set<String>> testDeps = Loadables.getTransitiveClosurePerClass(graph,
+                Arrays.asList("T1", "T2", "T3", "T4"));
+        // T4 is not in the graph, so its closure is not backed by the graph
+        testDeps.put("T4", new HashSet<>(Arrays.asList("T4", "D")));
+        List<String> testList = new ArrayList<>(testDeps.keySet());
+        assertEquals(invertByContains(testList, testDeps), ZLCHelper.invertTestDeps(testList, testDeps));
+    }
+
+    @Test
+    public void testParallelSameAsSequential() {
+        List<String> classes = Arrays.asList(ZLCData.class.getName(), ZLCFileContent.class.getName(),
+                ZLCFormat.class.getName(), DependencyGraph.class.getName(), ZLCHelper.class.getName(),
+                Loadables.class.getName(), Writer.class.getName(), Cache.class.getName());
+        Map<String, Set<String>> testDeps = new HashMap<>();
+        for (int i = 0; i < 40; i++) {
+            Set<String> deps = new HashSet<>();
+            for (int j = 0; j < classes.size(); j++) {
+                if ((i + j) % 3 != 0) {
+                    deps.add(classes.get(j));
+                }
+            }
+            // names that the loader cannot find are skipped, but make the dependency set large enough to shard
+            for (int j = 0; j < 300; j++) {
+                deps.add("missing.Class" + ((i * 7 + j) % 600));
+            }
+            testDeps.put("Test" + i, deps);
+        }
+        ClassLoader loader = ZLCHelperTest.class.getClassLoader();
+        for (ZLCFormat format : ZLCFormat.values()) {
+            ZLCFileContent sequential = ZLCHelper.createZLCData(testDeps, loader, true, format, 1);
+            ZLCFileContent parallel = ZLCHelper.createZLCData(testDeps, loader, true, format, 4);
+            assertEquals(classes.size(), sequential.getZlcData().size());
+            assertEquals(sequential.getTests(), parallel.getTests());
+            assertEquals(toStrings(sequential.getZlcData()), toStrings(parallel.getZlcData()));
+        }
+    }
+
+    public static String writeZLCFile(String artifactsDir, ZLCFormat format) {
+        ClassLoader loader = ZLCHelperTest.class.getClassLoader();
+        List<String> tests = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            tests.add("Test" + i);
+        }
+        List<ZLCData> rows = new ArrayList<>();
+        ChecksumUtil checksumUtil = new ChecksumUtil(true);
+        Class<?>[] classes = {ZLCData.class, ZLCFileContent.class, ZLCFormat.class, DependencyGraph.class,
+            ZLCHelper.class, Loadables.class, Writer.class, Cache.class, Pair.class};
+        for (int i = 0; i < classes.length; i++) {
+            URL url = loader.getResource(ChecksumUtil.toClassName(classes[i].getName()));
+            String checksum = i % 3 == 0 ? "stale" : checksumUtil.computeSingleCheckSum(url);
+            // the last row is reached by all tests, so BINARY stores its tests as a bitmap
+            Set<Integer> testsIdx = new HashSet<>();
+            for (int t = 0; t < tests.size(); t++) {
+                if (i == classes.length - 1 || t == i || t == i * 7 + 1) {
+                    testsIdx.add(t);
+                }
+            }
+            Set<String> testsStr = new HashSet<>();
+            for (int t : testsIdx) {
+                testsStr.add(tests.get(t));
+            }
+            rows.add(format == ZLCFormat.PLAIN_TEXT ? new ZLCData(url, checksum, format, testsStr, null)
+                    : new ZLCData(url, checksum, format, null, testsIdx));
+        }
+        Writer.writeToFile(new ZLCFileContent(tests, rows, format), ZLCHelper.zlcFile, artifactsDir);
+        return artifactsDir;
+    }
+
+    @Test
+    public void testParallelChangeDetectionSameAsSequential() throws IOException {
+        String artifactsDir = writeZLCFile(folder.newFolder().getAbsolutePath(), ZLCFormat.PLAIN_TEXT);
+        Pair<Set<String>, Set<String>> sequential = ZLCHelper.getChangedData(artifactsDir, true, 1);
+        Pair<Set<String>, Set<String>> parallel = ZLCHelper.getChangedData(artifactsDir, true, 4);
+        // the stale rows are reached by Test0, Test1, Test3, Test6 and Test22
+        assertEquals(35, sequential.getKey().size());
+        assertFalse(sequential.getKey().contains("Test22"));
+        assertEquals(3, sequential.getValue().size());
+        assertEquals(sequential.getKey(), parallel.getKey());
+        assertEquals(sequential.getValue(), parallel.getValue());
+    }
+
+    @Test
+    public void testBinarySameAsText() throws IOException {
+        String plainDir = writeZLCFile(folder.newFolder().getAbsolutePath(), ZLCFormat.PLAIN_TEXT);
+        Pair<Set<String>, Set<String>> expected = ZLCHelper.getChangedData(plainDir, true, 1);
+        for (ZLCFormat format : ZLCFormat.values()) {
+            String artifactsDir = writeZLCFile(folder.newFolder().getAbsolutePath(), format);
+            assertEquals(format == ZLCFormat.BINARY, ZLCBinaryFile.isBinary(new File(artifactsDir, ZLCHelper.zlcFile)));
+            Pair<Set<String>, Set<String>> actual = ZLCHelper.getChangedData(artifactsDir, true, 2);
+            assertEquals(expected.getKey(), actual.getKey());
+            assertEquals(expected.getValue(), actual.getValue());
+            assertEquals(ZLCHelper.getExistingClasses(plainDir), ZLCHelper.getExistingClasses(artifactsDir));
+        }
+    }
+
+    @Test
+    public void testStatIndexSkipsUnchangedFiles() throws IOException {
+        String artifactsDir = folder.newFolder().getAbsolutePath();
+        File classFile = folder.newFile("Tracked.class");
+        Files.write(classFile.toPath(), new byte[] {1, 2, 3});
+        File racyFile = folder.newFile("Racy.class");
+        Files.write(racyFile.toPath(), new byte[] {4, 5, 6});
+        classFile.setLastModified(System.currentTimeMillis() - 60000);
+        // the recorded checksums are bogus, so they only match if we do not hash the files again
+        List<ZLCData> rows = Arrays.asList(
+                new ZLCData(classFile.toURI().toURL(), "123", ZLCFormat.PLAIN_TEXT,
+                        new HashSet<>(Collections.singletonList("Test0")), null),
+                new ZLCData(racyFile.toURI().toURL(), "456", ZLCFormat.PLAIN_TEXT,
+                        new HashSet<>(Collections.singletonList("Test1")), null));
+        Writer.writeToFile(new ZLCFileContent(Arrays.asList("Test0", "Test1"), rows, ZLCFormat.PLAIN_TEXT),
+                ZLCHelper.zlcFile, artifactsDir);
+        // the racy file was modified too recently to be recorded
+        Files.write(new File(artifactsDir, ZLCHelper.STAT_FILE).toPath(), Collections.singletonList(
+                classFile.toURI().toURL().toExternalForm() + " " + classFile.length() + " "
+                        + classFile.lastModified() + " 123"));
+
+        Pair<Set<String>, Set<String>> data = ZLCHelper.getChangedData(artifactsDir, true, 1, false);
+        assertEquals(Collections.singleton("Test0"), data.getKey());
+        assertEquals(Collections.singleton(racyFile.toURI().toURL().toExternalForm()), data.getValue());
+
+        data = ZLCHelper.getChangedData(artifactsDir, true, 1, true);
+        assertEquals(Collections.emptySet(), data.getKey());
+
+        Files.write(classFile.toPath(), new byte[] {1, 2, 3, 4});
+        data = ZLCHelper.getChangedData(artifactsDir, true, 1, false);
+        assertEquals(Collections.emptySet(), data.getKey());
+    }
+
+    @Test
+    public void testStatIndexRecordsOnlyComputedOrCarriedOverChecksums() throws IOException {
+        String artifactsDir = folder.newFolder().getAbsolutePath();
+        File classFile = folder.newFile("Tracked.class");
+        Files.write(classFile.toPath(), new byte[] {1, 2, 3});
+        File racyFile = folder.newFile("Racy.class");
+        Files.write(racyFile.toPath(), new byte[] {4, 5, 6});
+        classFile.setLastModified(System.currentTimeMillis() - 60000);
+        String url = classFile.toURI().toURL().toExternalForm();
+        String racyUrl = racyFile.toURI().toURL().toExternalForm();
+        ZLCStatIndex stats = ZLCStatIndex.create(null);
+        String checksum = stats.computeCheckSum(url, new ChecksumUtil(true));
+        stats.computeCheckSum(racyUrl, new ChecksumUtil(true));
+        stats.save(artifactsDir);
+        ZLCStatIndex loaded = ZLCStatIndex.load(artifactsDir);
+        assertEquals(checksum, loaded.getUnchangedChecksum(url));
+        assertNull(loaded.getUnchangedChecksum(racyUrl));
+        // an entry is only carried over together with the checksum that it was recorded with
+        ZLCStatIndex next = ZLCStatIndex.create(loaded);
+        next.carryOver(url, "stale");
+        next.save(artifactsDir);
+        assertNull(ZLCStatIndex.load(artifactsDir).getUnchangedChecksum(url));
+        next = ZLCStatIndex.create(loaded);
+        next.carryOver(url, checksum);
+        next.save(artifactsDir);
+        assertEquals(checksum, ZLCStatIndex.load(artifactsDir).getUnchangedChecksum(url));
+    }
+
+    @Test
+    public void testIncrementalSameAsFullRebuild() throws IOException {
+        ClassLoader loader = ZLCHelperTest.class.getClassLoader();
+        String zlcData = ZLCData.class.getName();
+        String zlcFormat = ZLCFormat.class.getName();
+        String writer = Writer.class.getName();
+        String cache = Cache.class.getName();
+        Map<String, Set<String>> oldDeps = new HashMap<>();
+        oldDeps.put("TestA", new HashSet<>(Arrays.asList(zlcData, zlcFormat)));
+        oldDeps.put("TestB", new HashSet<>(Arrays.asList(zlcFormat, writer)));
+        oldDeps.put("TestD", new HashSet<>(Arrays.asList(zlcData)));
+        // Writer changed, so that TestB no longer reaches it; TestC is new, with Cache as a new dependency,
+        // and TestD was deleted
+        Map<String, Set<String>> newDeps = new HashMap<>();
+        newDeps.put("TestA", new HashSet<>(Arrays.asList(zlcData, zlcFormat)));
+        newDeps.put("TestB", new HashSet<>(Arrays.asList(zlcFormat)));
+        newDeps.put("TestC", new HashSet<>(Arrays.asList(zlcData, cache)));
+        Set<String> changed = Collections.singleton(
+                loader.getResource(ChecksumUtil.toClassName(writer)).toExternalForm());
+        Set<String> nonAffected = new HashSet<>(Arrays.asList("TestA", "TestD"));
+        for (ZLCFormat format : ZLCFormat.values()) {
+            String incrementalDir = folder.newFolder().getAbsolutePath();
+            ZLCHelper.updateZLCFile(oldDeps, loader, incrementalDir, null, false, format, 1, null, null);
+            ZLCHelper.updateZLCFile(newDeps, loader, incrementalDir, null, false, format, 1, changed, nonAffected);
+            String fullDir = folder.newFolder().getAbsolutePath();
+            ZLCHelper.updateZLCFile(newDeps, loader, fullDir, null, false, format, 1, null, null);
+            assertEquals(ZLCHelper.getChangedData(fullDir, true, 1, true).getKey(),
+                    ZLCHelper.getChangedData(incrementalDir, true, 1, true).getKey());
+            Map<String, String> checksums = ZLCHelper.readCheckSums(new File(fullDir, ZLCHelper.zlcFile));
+            assertEquals(checksums, ZLCHelper.readCheckSums(new File(incrementalDir, ZLCHelper.zlcFile)));
+            assertEquals(3, checksums.size());
+            if (format != ZLCFormat.BINARY) {
+                assertEquals(new HashSet<>(Files.readAllLines(new File(fullDir, ZLCHelper.zlcFile).toPath())),
+                        new HashSet<>(Files.readAllLines(new File(incrementalDir, ZLCHelper.zlcFile).toPath())));
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalReusesOnlyUnchangedCheckSums() throws IOException {
+        ClassLoader loader = ZLCHelperTest.class.getClassLoader();
+        String zlcData = ZLCData.class.getName();
+        String zlcFormat = ZLCFormat.class.getName();
+        Map<String, Set<String>> testDeps = new HashMap<>();
+        testDeps.put("TestA", new HashSet<>(Arrays.asList(zlcData, zlcFormat)));
+        String artifactsDir = folder.newFolder().getAbsolutePath();
+        String dataUrl = loader.getResource(ChecksumUtil.toClassName(zlcData)).toExternalForm();
+        String formatUrl = loader.getResource(ChecksumUtil.toClassName(zlcFormat)).toExternalForm();
+        List<ZLCData> rows = Arrays.asList(
+                new ZLCData(new URL(dataUrl), "1", ZLCFormat.PLAIN_TEXT, Collections.singleton("TestA"), null),
+                new ZLCData(new URL(formatUrl), "2", ZLCFormat.PLAIN_TEXT, Collections.singleton("TestA"), null));
+        Writer.writeToFile(new ZLCFileContent(Arrays.asList("TestA"), rows, ZLCFormat.PLAIN_TEXT),
+                ZLCHelper.zlcFile, artifactsDir);
+        // only the checksum of a class that did not change is carried over
+        ZLCHelper.updateZLCFile(testDeps, loader, artifactsDir, null, false, ZLCFormat.PLAIN_TEXT, 1,
+                Collections.singleton(formatUrl), Collections.<String>emptySet());
+        Map<String, String> checksums = ZLCHelper.readCheckSums(new File(artifactsDir, ZLCHelper.zlcFile));
+        assertEquals("1", checksums.get(dataUrl));
+        assertEquals(new ChecksumUtil(true).computeSingleCheckSum(new URL(formatUrl)), checksums.get(formatUrl));
+    }
+
+    @Test
+    public void testMergeKeepsRowsOfNonAffectedTests() throws IOException {
+        ClassLoader loader = ZLCHelperTest.class.getClassLoader();
+        String zlcData = ZLCData.class.getName();
+        String zlcFormat = ZLCFormat.class.getName();
+        String dataUrl = loader.getResource(ChecksumUtil.toClassName(zlcData)).toExternalForm();
+        String formatUrl = loader.getResource(ChecksumUtil.toClassName(zlcFormat)).toExternalForm();
+        Map<String, Set<String>> oldDeps = new HashMap<>();
+        oldDeps.put("TestA", new HashSet<>(Arrays.asList(zlcData)));
+        oldDeps.put("TestB", new HashSet<>(Arrays.asList(zlcFormat)));
+        String artifactsDir = folder.newFolder().getAbsolutePath();
+        ZLCHelper.updateZLCFile(oldDeps, loader, artifactsDir, null, false, ZLCFormat.INDEXED, 1, null, null);
+        // the closure of the non-affected TestA is not walked again, but its rows are kept
+        Map<String, Set<String>> newDeps = new HashMap<>();
+        newDeps.put("TestA", new HashSet<String>());
+        newDeps.put("TestB", new HashSet<>(Arrays.asList(zlcData, zlcFormat)));
+        ZLCHelper.updateZLCFile(newDeps, loader, artifactsDir, null, false, ZLCFormat.INDEXED, 1,
+                Collections.<String>emptySet(), Collections.singleton("TestA"));
+        Map<String, Pair<String, Set<String>>> rows = ZLCHelper.readRows(new File(artifactsDir, ZLCHelper.zlcFile));
+        assertEquals(new HashSet<>(Arrays.asList("TestA", "TestB")), rows.get(dataUrl).getValue());
+        assertEquals(Collections.singleton("TestB"), rows.get(formatUrl).getValue());
+    }
+
+    private static Set<String> toStrings(List<ZLCData> rows) {
+        Set<String> lines = new HashSet<>();
+        for (ZLCData row : rows) {
+            lines.add(row.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,9 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.SetupUtil;
+
+setupUtil = new SetupUtil(new File(basedir, ".starts/deps.zlc"))
+file = new File(basedir, "src/main/java/inter/Child.java");
+setupUtil.replaceAllInFile(file, "Set<Integer>", "Set")
@@ -0,0 +1,12 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.SetupUtil;
+
+setupUtil = new SetupUtil(new File(basedir, ".starts/deps.zlc"))
+file = new File(basedir, "src/main/java/inter/Child.java");
+setupUtil.replaceAllInFile(file, "Set<Integer>", "Set")
+pom = new File(basedir, "pom.xml");
+setupUtil.replaceAllInFile(pom, "  <build>", "  <dependencies><dependency><groupId>commons-codec</groupId>"
+        + "<artifactId>commons-codec</artifactId><version>1.6</version></dependency></dependencies>\n  <build>")
@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package inter;
+
+import java.util.Set;
+
+public class Child extends Base {
+    @Override
+    public Set<Integer> getSet() {
+        return output;
+    }
+}
@@ -0,0 +1,9 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package inter;
+
+public class GrandChild extends Child {
+
+}
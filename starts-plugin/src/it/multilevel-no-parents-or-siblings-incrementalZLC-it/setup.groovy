@@ -0,0 +1,17 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.SetupUtil;
+
+setupUtil = new SetupUtil(new File(basedir, ".starts/deps.zlc"))
+file = new File(basedir, "src/main/java/inter/Child.java");
+setupUtil.replaceAllInFile(file, "Set<Integer>", "Set")
+// delete a test, and add a new test that reaches a new class
+setupUtil.deleteFile(new File(basedir, "src/test/java/inter/SiblingTest.java"))
+setupUtil.deleteFile(new File(basedir, "target/test-classes/inter/SiblingTest.class"))
+setupUtil.writeFile(new File(basedir, "src/main/java/inter/Other.java"),
+        "package inter;\n\npublic class Other extends Sibling {\n}\n")
+setupUtil.writeFile(new File(basedir, "src/test/java/inter/OtherTest.java"),
+        "package inter;\n\nimport org.junit.Test;\n\npublic class OtherTest {\n"
+                + "    @Test\n    public void test() {\n        new Other().add(1);\n    }\n}\n")
@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.VerifyUtil;
+
+firstRun = new File(basedir, "first-run.txt");
+verifyUtil = new VerifyUtil(new File(basedir, "build.log"));
+
+if (!firstRun.exists()) {
+    firstRun.createNewFile();
+    verifyUtil.assertCorrectlyAffected("4");
+} else {
+    verifyUtil.assertCorrectlyAffected("3");
+    verifyUtil.assertContains("FINEST: ZLC: merged the closures of 3 of 4 tests");
+    verifyUtil.assertContains("FINEST: ZLC: reused 6 of 9 checksums");
+    verifyUtil.assertSameAsFullRebuild(basedir);
+    verifyUtil.deleteFile(firstRun);
+    verifyUtil.deleteFile(new File(basedir, ".starts/deps.zlc"));
+    verifyUtil.deleteFile(new File(basedir, "src/main/java/inter/Other.java"));
+    verifyUtil.deleteFile(new File(basedir, "src/test/java/inter/OtherTest.java"));
+    verifyUtil.deleteFile(new File(basedir, "target/classes/inter/Other.class"));
+    verifyUtil.deleteFile(new File(basedir, "target/test-classes/inter/OtherTest.class"));
+}
@@ -0,0 +1,19 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.VerifyUtil;
+
+firstRun = new File(basedir, "first-run.txt");
+verifyUtil = new VerifyUtil(new File(basedir, "build.log"));
+
+if (!firstRun.exists()) {
+    firstRun.createNewFile();
+    verifyUtil.assertCorrectlyAffected("4");
+    verifyUtil.assertContains("INFO: STARTS:ReusedClasspathElements: 0 of 2");
+} else {
+    verifyUtil.assertCorrectlyAffected("2");
+    verifyUtil.assertContains("INFO: STARTS:ReusedClasspathElements: 0 of 2");
+    verifyUtil.deleteFile(firstRun);
+    verifyUtil.deleteFile(new File(basedir, ".starts/deps.zlc"));
+}
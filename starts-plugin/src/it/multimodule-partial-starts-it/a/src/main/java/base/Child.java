@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package base;
+
+import java.util.Set;
+
+public class Child extends Base {
+
+    @Override
+    public Set<Integer> getSet() {
+        return output;
+    }
+}
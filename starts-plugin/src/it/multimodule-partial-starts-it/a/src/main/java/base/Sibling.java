@@ -0,0 +1,9 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package base;
+
+public class Sibling extends Base {
+    
+}
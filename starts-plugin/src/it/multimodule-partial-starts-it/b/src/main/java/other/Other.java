@@ -0,0 +1,11 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package other;
+
+public class Other {
+    public int twice(int value) {
+        return 2 * value;
+    }
+}
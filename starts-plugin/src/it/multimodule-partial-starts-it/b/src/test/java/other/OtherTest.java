@@ -0,0 +1,15 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package other;
+
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+public class OtherTest {
+    @Test
+    public void test() {
+        assertEquals("twice", 4, new Other().twice(2));
+    }
+}
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.VerifyUtil;
+
+firstRun = new File(basedir, "first-run.txt");
+verifyUtil = new VerifyUtil(new File(basedir, "build.log"));
+
+if (!firstRun.exists()) {
+    verifyUtil.assertCorrectlyAffected("3");
+    verifyUtil.assertContains("Running other.OtherTest");
+    firstRun.createNewFile();
+} else {
+    verifyUtil.assertCorrectlyAffected("1");
+    // module a hands over its one affected test as an include, which must not reach module b
+    verifyUtil.assertContains("Running base.ChildTest");
+    verifyUtil.assertNotContains("Running base.SiblingTest");
+    verifyUtil.assertContains("Running other.OtherTest");
+    verifyUtil.deleteFile(firstRun);
+    verifyUtil.deleteFile(new File(basedir, "a/.starts/deps.zlc"));
+}
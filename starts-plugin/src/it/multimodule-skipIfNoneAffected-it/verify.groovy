@@ -0,0 +1,24 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.VerifyUtil;
+
+firstRun = new File(basedir, "first-run.txt");
+verifyUtil = new VerifyUtil(new File(basedir, "build.log"));
+
+if (!firstRun.exists()) {
+    firstRun.createNewFile();
+    verifyUtil.assertCorrectlyAffected("1");
+    verifyUtil.assertContains("Running base.SimpleTest");
+    verifyUtil.assertContains("Running other.OtherTest");
+    verifyUtil.assertContains("INFO: STARTS:SkippedModules: 0 of 1 so far []");
+} else {
+    verifyUtil.assertCorrectlyAffected("0");
+    verifyUtil.assertContains("INFO: No tests are affected; skipping Surefire.");
+    verifyUtil.assertNotContains("Running base.SimpleTest");
+    verifyUtil.assertContains("Running other.OtherTest");
+    verifyUtil.assertContains("INFO: STARTS:SkippedModules: 1 of 1 so far [multimodule-skipIfNoneAffected-a]");
+    verifyUtil.deleteFile(firstRun);
+    verifyUtil.deleteFile(new File(basedir, "a/.starts/deps.zlc"))
+}
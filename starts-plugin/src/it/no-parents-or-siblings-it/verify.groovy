@@ -12,6 +12,10 @@ if (!firstRun.exists()) {
     firstRun.createNewFile();
 } else {
     verifyUtil.assertCorrectlyAffected("1");
+    // the one affected test is handed over to Surefire as an include
+    verifyUtil.assertContains("Running base.ChildTest");
+    verifyUtil.assertNotContains("Running base.SiblingTest");
+    verifyUtil.assertNotContains("Running base.BaseTest");
     verifyUtil.deleteFile(firstRun);
     verifyUtil.deleteFile(new File(basedir, ".starts/deps.zlc"));
 }
@@ -0,0 +1,22 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+import edu.illinois.starts.jdeps.VerifyUtil;
+
+firstRun = new File(basedir, "first-run.txt");
+verifyUtil = new VerifyUtil(new File(basedir, "build.log"));
+
+if (!firstRun.exists()) {
+    firstRun.createNewFile();
+    verifyUtil.assertCorrectlyAffected("1");
+    verifyUtil.assertContains("Running base.SimpleTest");
+    verifyUtil.assertNotContains("INFO: No tests are affected; skipping Surefire.");
+} else {
+    verifyUtil.assertCorrectlyAffected("0");
+    verifyUtil.assertContains("INFO: No tests are affected; skipping Surefire.");
+    verifyUtil.assertContains("[INFO] Tests are skipped.");
+    verifyUtil.assertNotContains("Running base.SimpleTest");
+    verifyUtil.deleteFile(firstRun);
+    verifyUtil.deleteFile(new File(basedir, ".starts/deps.zlc"))
+}
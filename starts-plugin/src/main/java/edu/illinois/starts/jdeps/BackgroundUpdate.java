@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.jdeps;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.stream.Stream;
+
+import edu.illinois.starts.helpers.FileUtil;
+import edu.illinois.starts.helpers.Writer;
+import edu.illinois.starts.util.Logger;
+
+/**
+ * Runs the update of the RTS artifacts for the next run on a background thread while the selected tests
+ * run. The update reads and writes a copy of the artifacts in a staging directory, so the artifacts are
+ * only replaced once it completes: finish() waits for the update, and then moves every staged artifact
+ * into the artifacts directory, and deletes those that the update deleted. If the update fails, or
+ * finish() is never called, the artifacts of the last run stay as they are, and the next run finds the
+ * changes of this run again.
+ */
+class BackgroundUpdate {
+    static final String STAGING_DIR = "update-staging";
+
+    private static final Map<String, BackgroundUpdate> PENDING = new ConcurrentHashMap<>();
+
+    private final File artifactsDir;
+    private final File stagingDir;
+    // the files that we copied to the staging directory
+    private final Set<Path> staged;
+    private final FutureTask<Void> task;
+    private final Thread thread;
+
+    private BackgroundUpdate(File artifactsDir, File stagingDir, Set<Path> staged, Callable<Void> update) {
+        this.artifactsDir = artifactsDir;
+        this.stagingDir = stagingDir;
+        this.staged = staged;
+        this.task = new FutureTask<>(update);
+        this.thread = new Thread(task, "starts-update");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Copy the artifacts to the staging directory, and start the update, which must write to the staging
+     * directory only. An update of the same directory that is still pending, e.g., of an earlier build in
+     * the same JVM that failed before finish(), is cancelled first, and we wait for it to stop writing to
+     * the staging directory.
+     */
+    static void start(String artifactsDir, File stagingDir, Callable<Void> update) throws IOException {
+        File dir = new File(artifactsDir);
+        BackgroundUpdate previous = PENDING.remove(dir.getAbsolutePath());
+        if (previous != null) {
+            previous.task.cancel(true);
+            try {
+                previous.thread.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for the previous update of " + artifactsDir, ie);
+            }
+        }
+        if (stagingDir.exists()) {
+            FileUtil.delete(stagingDir);
+        }
+        Set<Path> staged = new HashSet<>();
+        for (Path file : listFiles(dir.toPath(), stagingDir.toPath())) {
+            Path copy = stagingDir.toPath().resolve(dir.toPath().relativize(file));
+            Files.createDirectories(copy.getParent());
+            Files.copy(file, copy);
+            staged.add(copy);
+        }
+        Files.createDirectories(stagingDir.toPath());
+        BackgroundUpdate pending = new BackgroundUpdate(dir, stagingDir, staged, update);
+        PENDING.put(dir.getAbsolutePath(), pending);
+        pending.thread.start();
+    }
+
+    /**
+     * Wait for the update of the given artifacts directory, if one was started, and replace the artifacts
+     * with those that it wrote.
+     *
+     * @return false if an update was started but failed
+     */
+    static boolean finish(String artifactsDir) {
+        BackgroundUpdate pending = PENDING.remove(new File(artifactsDir).getAbsolutePath());
+        if (pending == null) {
+            return true;
+        }
+        Logger logger = Logger.getGlobal();
+        long start = System.currentTimeMillis();
+        try {
+            pending.task.get();
+            pending.commit();
+            return true;
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            logger.log(Level.WARNING, "Interrupted while waiting for the update of the RTS artifacts");
+        } catch (ExecutionException ee) {
+            ee.getCause().printStackTrace();
+            logger.log(Level.WARNING, "The update of the RTS artifacts failed; keeping those of the last run");
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+            logger.log(Level.WARNING, "I could not replace the RTS artifacts with the updated ones");
+        } finally {
+            FileUtil.delete(pending.stagingDir);
+            long end = System.currentTimeMillis();
+            logger.log(Level.FINE, "[PROFILE] waitForUpdate: " + Writer.millsToSeconds(end - start));
+        }
+        return false;
+    }
+
+    private void commit() throws IOException {
+        for (Path file : listFiles(stagingDir.toPath(), null)) {
+            staged.remove(file);
+            Path target = artifactsDir.toPath().resolve(stagingDir.toPath().relativize(file));
+            Files.createDirectories(target.getParent());
+            Writer.moveAtomically(file, target);
+        }
+        // what is left was deleted by the update
+        for (Path file : staged) {
+            Files.deleteIfExists(artifactsDir.toPath().resolve(stagingDir.toPath().relativize(file)));
+        }
+    }
+
+    private static List<Path> listFiles(Path dir, Path skip) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return new ArrayList<>();
+        }
+        List<Path> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            Iterator<Path> iterator = paths.iterator();
+            while (iterator.hasNext()) {
+                Path path = iterator.next();
+                if ((skip == null || !path.startsWith(skip)) && Files.isRegularFile(path)) {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -16,15 +16,19 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
+import edu.illinois.starts.enums.DependencyExtractor;
 import edu.illinois.starts.enums.DependencyFormat;
+import edu.illinois.starts.helpers.AnalysisState;
 import edu.illinois.starts.helpers.Cache;
 import edu.illinois.starts.helpers.Loadables;
 import edu.illinois.starts.helpers.PomUtil;
 import edu.illinois.starts.helpers.RTSUtil;
+import edu.illinois.starts.helpers.ReactorSession;
 import edu.illinois.starts.helpers.Writer;
 import edu.illinois.starts.util.Logger;
-import edu.illinois.yasgl.DirectedGraph;
 import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.surefire.AbstractSurefireMojo;
 import org.apache.maven.plugin.surefire.SurefirePlugin;
@@ -66,6 +70,52 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
     @Parameter(property = "depFormat", defaultValue = "ZLC")
     protected DependencyFormat depFormat;
 
+    /**
+     * Allows to switch how we extract class-level dependencies. Set to "JDEPS" to run the
+     * jdeps tool and parse its output. Set to "ASM" to read the constant pools and descriptors
+     * of .class files in-process, which avoids launching jdeps and parsing its text output.
+     * @see edu.illinois.starts.enums.DependencyExtractor
+     */
+    @Parameter(property = "depExtractor", defaultValue = "JDEPS")
+    protected DependencyExtractor depExtractor;
+
+    /**
+     * Set this to "true" to store the dependencies of each class together with the checksum of its
+     * .class file, and to only re-extract the dependencies of classes that changed since the last run.
+     * This has no effect when jdeps runs in recursive mode (useThirdParty without a graph cache).
+     */
+    @Parameter(property = "incrementalDeps", defaultValue = FALSE)
+    protected boolean incrementalDeps;
+
+    /**
+     * Number of shards into which to split the classes whose dependencies we extract. Directories are
+     * split by package, and the shards are analyzed concurrently, by separate jdeps (or ASM) runs whose
+     * results are merged. The default of 1 analyzes all classes in one run. Recursive jdeps runs
+     * (useThirdParty without a graph cache) are never split.
+     */
+    @Parameter(property = "depShards", defaultValue = "1")
+    protected int depShards;
+
+    /**
+     * Set this to "true" to extract the dependencies of the classes of each module only once per reactor
+     * build, instead of once in every module that has them on its classpath. The dependencies are kept in
+     * memory, for the modules that come later in the reactor, and jars that were built by modules of the
+     * reactor are analyzed like their classes directories. Not used with incrementalDeps, or when jdeps runs
+     * in recursive mode.
+     */
+    @Parameter(property = "reactorAnalysis", defaultValue = FALSE)
+    protected boolean reactorAnalysis;
+
+    /**
+     * Number of threads with which to compute checksums, both when we check the classes in the
+     * .zlc file for changes and when we create the .zlc file for the next run, with which to hash
+     * the classpath jars that changed since the last run, and with which to run jdeps on third-party
+     * jars whose graphs are missing from the graph cache. The default of 1 does all of this work on
+     * the calling thread.
+     */
+    @Parameter(property = "parallelism", defaultValue = "1")
+    protected int parallelism;
+
     /**
      * Path to directory that contains the result of running jdeps on third-party
      * and standard library jars that an application may need, e.g., those in M2_REPO.
@@ -73,6 +123,25 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
     @Parameter(property = "gCache", defaultValue = "${basedir}${file.separator}jdeps-cache")
     protected String graphCache;
 
+    /**
+     * Set this to "true" to load the cached graphs of third-party jars lazily, if useThirdParty is
+     * "true". The graph of a jar is then only loaded once the dependencies of the project classes
+     * reach a class in the jar, so jars that the project never uses are not read. Test selection is
+     * the same, but the printed graph only contains the reachable library edges.
+     */
+    @Parameter(property = "lazyThirdParty", defaultValue = FALSE)
+    protected boolean lazyThirdParty;
+
+    /**
+     * Set this to "true" to keep the class loader and the library edges of the dependency graph in
+     * memory after the build, for the next build of the project in the same JVM. This only helps when
+     * Maven itself stays alive between builds, e.g., with the Maven daemon (mvnd); otherwise, every
+     * build analyzes the project from scratch, as it does by default. The kept state is dropped when
+     * the classpath, or any jar on it, changes.
+     */
+    @Parameter(property = "keepAnalysisState", defaultValue = FALSE)
+    protected boolean keepAnalysisState;
+
     /**
      * Set this to "false" to not print the graph obtained from jdeps parsing.
      * When "true" the graph is written to file after the run.
@@ -152,11 +221,17 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
 
     public ClassLoader createClassLoader(Classpath sfClassPath) {
         long start = System.currentTimeMillis();
-        ClassLoader loader = null;
-        try {
-            loader = sfClassPath.createClassLoader(false, false, "MyRole");
-        } catch (SurefireExecutionException see) {
-            see.printStackTrace();
+        AnalysisState state = getAnalysisState(sfClassPath);
+        ClassLoader loader = state == null ? null : state.getClassLoader();
+        if (loader == null) {
+            try {
+                loader = sfClassPath.createClassLoader(false, false, "MyRole");
+            } catch (SurefireExecutionException see) {
+                see.printStackTrace();
+            }
+            if (state != null) {
+                state.setClassLoader(loader);
+            }
         }
         long end = System.currentTimeMillis();
         Logger.getGlobal().log(Level.FINE, "[PROFILE] updateForNextRun(createClassLoader): "
@@ -166,11 +241,11 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
 
     protected class Result {
         private Map<String, Set<String>> testDeps;
-        private DirectedGraph<String> graph;
+        private DependencyGraph graph;
         private Set<String> affectedTests;
         private Set<String> unreachedDeps;
 
-        public Result(Map<String, Set<String>> testDeps, DirectedGraph<String> graph,
+        public Result(Map<String, Set<String>> testDeps, DependencyGraph graph,
                       Set<String> affectedTests, Set<String> unreached) {
             this.testDeps = testDeps;
             this.graph = graph;
@@ -182,7 +257,7 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
             return testDeps;
         }
 
-        public DirectedGraph<String> getGraph() {
+        public DependencyGraph getGraph() {
             return graph;
         }
 
@@ -195,6 +270,33 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
         }
     }
 
+    /**
+     * Get the analysis state that we keep for this project between builds, if keepAnalysisState is true.
+     */
+    protected AnalysisState getAnalysisState(Classpath sfClassPath) {
+        if (!keepAnalysisState) {
+            return null;
+        }
+        return AnalysisState.forProject(getProject().getBasedir().getAbsolutePath(), sfClassPath.getClassPath());
+    }
+
+    /**
+     * Get the analysis session of the reactor build that this module is part of, which the modules of the
+     * reactor share, as they run in the same JVM.
+     */
+    protected ReactorSession getReactorSession() {
+        MavenSession session = getSession();
+        if (session == null) {
+            return null;
+        }
+        List<String> buildDirectories = new ArrayList<>();
+        for (MavenProject project : session.getSortedProjects()) {
+            buildDirectories.add(project.getBuild().getDirectory());
+        }
+        String id = session.getStartTime().getTime() + WHITE_SPACE + session.getExecutionRootDirectory();
+        return ReactorSession.forBuild(id, buildDirectories);
+    }
+
     public Classpath getSureFireClassPath() throws MojoExecutionException {
         long start = System.currentTimeMillis();
         if (sureFireClassPath == null) {
@@ -213,6 +315,16 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
 
     public Result prepareForNextRun(String sfPathString, Classpath sfClassPath, List<String> classesToAnalyze,
                                     Set<String> nonAffected, boolean computeUnreached) throws MojoExecutionException {
+        return prepareForNextRun(sfPathString, sfClassPath, classesToAnalyze, nonAffected, computeUnreached, true);
+    }
+
+    /**
+     * Build the dependency graph for the next run and, if computeClosures is true, the transitive closure
+     * of each class to analyze. Without closures, the test dependencies of the result are null.
+     */
+    public Result prepareForNextRun(String sfPathString, Classpath sfClassPath, List<String> classesToAnalyze,
+                                    Set<String> nonAffected, boolean computeUnreached, boolean computeClosures)
+            throws MojoExecutionException {
         long start = System.currentTimeMillis();
         String m2Repo = getLocalRepository().getBasedir();
         File jdepsCache = new File(graphCache);
@@ -226,17 +338,37 @@ abstract class BaseMojo extends SurefirePlugin implements StartsConstants {
         // Surefire Classpath object is easier to iterate over without de-constructing
         // sfPathString (which we use in a number of other places)
         loadables.setSurefireClasspath(sfClassPath);
+        loadables.setDepExtractor(depExtractor);
+        loadables.setIncrementalDeps(incrementalDeps);
+        loadables.setComputeClosures(computeClosures);
+        loadables.setDepShards(depShards);
+        if (reactorAnalysis && !incrementalDeps) {
+            loadables.setReactorSession(getReactorSession());
+        }
 
         long loadMoreEdges = System.currentTimeMillis();
-        Cache cache = new Cache(jdepsCache, m2Repo);
+        Cache cache = new Cache(jdepsCache, m2Repo, parallelism);
         // 1. Load non-reflection edges from third-party libraries in the classpath
-        List<String> moreEdges = new ArrayList<>();
-        if (useThirdParty) {
-            moreEdges = cache.loadM2EdgesFromCache(sfPathString);
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        if (useThirdParty && lazyThirdParty) {
+            // create the missing graphs first, so that the cache is not empty when we extract local deps
+            cache.findOrCreateGraphs(sfPathString);
+            loadables.setLibraryCache(cache);
+        } else if (useThirdParty) {
+            AnalysisState state = getAnalysisState(sfClassPath);
+            DependencyGraph.Builder kept = state == null ? null : state.getLibraryEdges(graphCache);
+            if (kept != null) {
+                builder = kept;
+            } else {
+                cache.loadM2EdgesFromCache(sfPathString, builder);
+                if (state != null) {
+                    state.setLibraryEdges(graphCache, builder);
+                }
+            }
         }
         long loadM2EdgesFromCache = System.currentTimeMillis();
         // 2. Get non-reflection edges from CUT and SDK; use (1) to build graph
-        loadables.create(new ArrayList<>(moreEdges), sfClassPath, computeUnreached);
+        loadables.create(builder, sfClassPath, computeUnreached);
 
         Map<String, Set<String>> transitiveClosure = loadables.getTransitiveClosure();
         long createLoadables = System.currentTimeMillis();
@@ -4,6 +4,7 @@
 
 package edu.illinois.starts.jdeps;
 
+import java.io.File;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -11,15 +12,16 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
 import edu.illinois.starts.data.ZLCFormat;
 import edu.illinois.starts.enums.DependencyFormat;
 import edu.illinois.starts.helpers.EkstaziHelper;
 import edu.illinois.starts.helpers.RTSUtil;
+import edu.illinois.starts.helpers.ReverseSelection;
 import edu.illinois.starts.helpers.Writer;
 import edu.illinois.starts.helpers.ZLCHelper;
 import edu.illinois.starts.util.Logger;
 import edu.illinois.starts.util.Pair;
-import edu.illinois.yasgl.DirectedGraph;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -43,14 +45,41 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
     @Parameter(property = "cleanBytes", defaultValue = TRUE)
     protected boolean cleanBytes;
 
+    /**
+     * Set this to "true" to hash every class file in deps.zlc when we look for changes. By default,
+     * a file whose size and modification time are the same as when deps.zlc was written keeps its
+     * old checksum without being read again.
+     */
+    @Parameter(property = "paranoidChecksums", defaultValue = FALSE)
+    protected boolean paranoidChecksums;
+
     /**
      * Format of the ZLC dependency file deps.zlc
      * Set to "INDEXED" to store indices of tests
      * Set to "PLAIN_TEXT" to store full URLs of tests
+     * Set to "BINARY" to store indices of tests in a compact binary file
      */
     @Parameter(property = "zlcFormat", defaultValue = "PLAIN_TEXT")
     protected ZLCFormat zlcFormat;
 
+    /**
+     * Set this to "true" to update deps.zlc incrementally: the rows of the tests that are not affected,
+     * and the checksums of the classes that did not change, are carried over, and only the dependencies
+     * of the affected and new tests are merged into the rows. When the changes were not computed in this
+     * run, or the classpath changed, deps.zlc is rebuilt.
+     */
+    @Parameter(property = "incrementalZLC", defaultValue = FALSE)
+    protected boolean incrementalZLC;
+
+    /**
+     * Set this to "true" to select tests by walking the dependency graph of the last run backwards
+     * from the changed classes, instead of by the closures of all tests that are stored in deps.zlc.
+     * The graph is saved in .starts/reverse-graph, and deps.zlc then only tracks checksums, so the
+     * closures of all tests are no longer computed when we update for the next run. Only used with ZLC.
+     */
+    @Parameter(property = "reverseSelection", defaultValue = FALSE)
+    protected boolean reverseSelection;
+
     /**
      * Set this to "true" to update test dependencies on disk. The default value of "false"
      * is useful for "dry runs" where one may want to see the diff without updating
@@ -59,6 +88,11 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
     @Parameter(property = "updateDiffChecksums", defaultValue = FALSE)
     private boolean updateDiffChecksums;
 
+    /**
+     * The classes whose checksum changed since deps.zlc was written, if we computed them in this run.
+     */
+    private Set<String> zlcChangedClasses;
+
     public void execute() throws MojoExecutionException {
         Logger.getGlobal().setLoggingLevel(Level.parse(loggingLevel));
 
@@ -79,11 +113,26 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
     }
 
     protected Pair<Set<String>, Set<String>> computeChangeData(boolean writeChanged) throws MojoExecutionException {
+        return computeChangeData(writeChanged, new HashSet<String>());
+    }
+
+    /**
+     * Compute the non-affected tests and the changed classes, where a class in a jar also counts as changed
+     * if its name is in changedJarClasses (only with ZLC, see ClassPathDiff).
+     */
+    protected Pair<Set<String>, Set<String>> computeChangeData(boolean writeChanged, Set<String> changedJarClasses)
+            throws MojoExecutionException {
         long start = System.currentTimeMillis();
         Pair<Set<String>, Set<String>> data = null;
         if (depFormat == DependencyFormat.ZLC) {
             ZLCHelper zlcHelper = new ZLCHelper();
-            data = zlcHelper.getChangedData(getArtifactsDir(), cleanBytes);
+            data = zlcHelper.getChangedData(getArtifactsDir(), cleanBytes, parallelism, paranoidChecksums,
+                    changedJarClasses);
+            // a jar that changed on the classpath may now have classes that no row tracks, so we rebuild
+            zlcChangedClasses = data == null || !changedJarClasses.isEmpty() ? null : data.getValue();
+            if (data != null && reverseSelection) {
+                data = selectByReverseReachability(data);
+            }
         } else if (depFormat == DependencyFormat.CLZ) {
             data = EkstaziHelper.getNonAffectedTests(getArtifactsDir());
         }
@@ -96,6 +145,22 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
         return data;
     }
 
+    /**
+     * Replace the non-affected tests that deps.zlc gives with those that cannot reach a changed class in
+     * the graph of the last run. Without a saved graph (e.g., if deps.zlc was written without
+     * reverseSelection), we keep the tests that deps.zlc gives.
+     */
+    private Pair<Set<String>, Set<String>> selectByReverseReachability(Pair<Set<String>, Set<String>> data)
+            throws MojoExecutionException {
+        ReverseSelection selection = ReverseSelection.load(getArtifactsDir());
+        if (selection == null) {
+            return data;
+        }
+        setIncludesExcludes();
+        List<String> allTests = getTestClasses("selectByReverseReachability");
+        return new Pair<>(selection.getNonAffectedTests(data.getValue(), allTests), data.getValue());
+    }
+
     protected void updateForNextRun(Set<String> nonAffected) throws MojoExecutionException {
         long start = System.currentTimeMillis();
         Classpath sfClassPath = getSureFireClassPath();
@@ -104,18 +169,28 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
         List<String> allTests = getTestClasses("updateForNextRun");
         Set<String> affectedTests = new HashSet<>(allTests);
         affectedTests.removeAll(nonAffected);
-        DirectedGraph<String> graph = null;
+        DependencyGraph graph = null;
         if (!affectedTests.isEmpty()) {
             ClassLoader loader = createClassLoader(sfClassPath);
             //TODO: set this boolean to true only for static reflectionAnalyses with * (border, string, naive)?
             boolean computeUnreached = true;
-            Result result = prepareForNextRun(sfPathString, sfClassPath, allTests, nonAffected, computeUnreached);
+            boolean reverse = reverseSelection && depFormat == DependencyFormat.ZLC;
+            Result result = prepareForNextRun(sfPathString, sfClassPath, allTests, nonAffected,
+                    computeUnreached && !reverse, !reverse);
             Map<String, Set<String>> testDeps = result.getTestDeps();
             graph = result.getGraph();
             Set<String> unreached = computeUnreached ? result.getUnreachedDeps() : new HashSet<String>();
-            if (depFormat == DependencyFormat.ZLC) {
+            if (reverse) {
+                ZLCHelper.updateZLCFileWithoutTests(ReverseSelection.getReachedClasses(graph, allTests), loader,
+                        getArtifactsDir(), useThirdParty, zlcFormat, parallelism,
+                        incrementalZLC ? zlcChangedClasses : null);
+                ReverseSelection.save(getArtifactsDir(), graph, allTests);
+            } else if (depFormat == DependencyFormat.ZLC) {
+                // a graph from an earlier run with reverseSelection would not match the new deps.zlc
+                new File(getArtifactsDir(), ReverseSelection.GRAPH_FILE).delete();
                 ZLCHelper zlcHelper = new ZLCHelper();
-                zlcHelper.updateZLCFile(testDeps, loader, getArtifactsDir(), unreached, useThirdParty, zlcFormat);
+                zlcHelper.updateZLCFile(testDeps, loader, getArtifactsDir(), unreached, useThirdParty, zlcFormat,
+                        parallelism, incrementalZLC ? zlcChangedClasses : null, nonAffected);
             } else if (depFormat == DependencyFormat.CLZ) {
                 // The next line is not needed with ZLC because '*' is explicitly tracked in ZLC
                 affectedTests = result.getAffectedTests();
@@ -137,7 +212,7 @@ public class DiffMojo extends BaseMojo implements StartsConstants {
     }
 
     public void save(String artifactsDir, Set<String> affectedTests, List<String> testClasses,
-                     String sfPathString, DirectedGraph<String> graph) {
+                     String sfPathString, DependencyGraph graph) {
         int globalLogLevel = Logger.getGlobal().getLoggingLevel().intValue();
         if (globalLogLevel <= Level.FINER.intValue()) {
             Writer.writeToFile(testClasses, "all-tests", artifactsDir);
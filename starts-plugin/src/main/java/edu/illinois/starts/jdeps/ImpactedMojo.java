@@ -10,12 +10,12 @@ import java.util.Set;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
 import edu.illinois.starts.helpers.RTSUtil;
 import edu.illinois.starts.helpers.Writer;
 import edu.illinois.starts.helpers.ZLCHelper;
 import edu.illinois.starts.util.Logger;
 import edu.illinois.starts.util.Pair;
-import edu.illinois.yasgl.DirectedGraph;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.Execute;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -108,7 +108,7 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
         Result result = prepareForNextRun(sfPathString, sfClassPath, allClasses, new HashSet<String>(), false);
         ZLCHelper zlcHelper = new ZLCHelper();
         zlcHelper.updateZLCFile(result.getTestDeps(), loader, getArtifactsDir(), new HashSet<String>(), useThirdParty,
-                zlcFormat);
+                zlcFormat, parallelism);
         long end = System.currentTimeMillis();
         if (writePath || logger.getLoggingLevel().intValue() <= Level.FINER.intValue()) {
             Writer.writeClassPath(sfPathString, getArtifactsDir());
@@ -119,7 +119,7 @@ public class ImpactedMojo extends DiffMojo implements StartsConstants {
         Logger.getGlobal().log(Level.FINE, PROFILE_UPDATE_FOR_NEXT_RUN_TOTAL + Writer.millsToSeconds(end - start));
     }
 
-    private void save(String artifactsDir, DirectedGraph<String> graph) {
+    private void save(String artifactsDir, DependencyGraph graph) {
         RTSUtil.saveForNextRun(artifactsDir, graph, printGraph, graphFile);
     }
 }
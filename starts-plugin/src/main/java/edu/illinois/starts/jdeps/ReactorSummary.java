@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 - Present. The STARTS Team. All Rights Reserved.
+ */
+
+package edu.illinois.starts.jdeps;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+
+import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.helpers.Writer;
+import edu.illinois.starts.util.Logger;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Collects, across the modules of a reactor build, the modules in which RunMojo skipped Surefire because
+ * none of their tests were affected, and reports the running total after each module in which RunMojo ran.
+ * We cannot tell which module is the last one to run RunMojo: the last module of the reactor may not run
+ * it, and with -T, modules finish in any order. The last report of the build is thus the summary of the
+ * whole build. The estimated time saved is the time to start a JVM for Surefire in each skipped module;
+ * the time that Surefire would have taken to scan for tests comes on top of that.
+ *
+ * <p>The modules are kept in static state, so they are dropped when a build with a different session
+ * starts, e.g., when the JVM that runs Maven outlives a single build.
+ */
+final class ReactorSummary implements StartsConstants {
+    private static Date sessionStart;
+    private static List<String> skipped = new ArrayList<>();
+    private static int modules;
+
+    private ReactorSummary() {
+    }
+
+    /**
+     * Record that RunMojo ran in the given project of the session, and whether it skipped Surefire there,
+     * and log the running total if the reactor has more than one module.
+     */
+    static synchronized void record(MavenSession session, MavenProject project, boolean skippedSurefire,
+                                    long forkStartupMillis) {
+        Date start = session.getStartTime();
+        if (sessionStart == null || !sessionStart.equals(start)) {
+            sessionStart = start;
+            skipped = new ArrayList<>();
+            modules = 0;
+        }
+        modules++;
+        if (skippedSurefire) {
+            skipped.add(project.getArtifactId());
+        }
+        if (session.getSortedProjects().size() > 1) {
+            Logger logger = Logger.getGlobal();
+            logger.log(Level.INFO, "STARTS:SkippedModules: " + skipped.size() + " of " + modules + " so far "
+                    + skipped);
+            logger.log(Level.INFO, "STARTS:EstimatedTimeSaved: "
+                    + Writer.millsToSeconds(skipped.size() * forkStartupMillis) + " seconds (" + skipped.size()
+                    + " Surefire JVMs not started, at " + forkStartupMillis + MILLISECOND + " each)");
+        }
+    }
+}
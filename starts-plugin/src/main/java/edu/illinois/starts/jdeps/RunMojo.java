@@ -9,17 +9,19 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.enums.DependencyFormat;
+import edu.illinois.starts.helpers.ClassPathDiff;
+import edu.illinois.starts.helpers.JarChecksums;
 import edu.illinois.starts.helpers.Writer;
 import edu.illinois.starts.maven.AgentLoader;
+import edu.illinois.starts.maven.SurefireSelection;
 import edu.illinois.starts.util.Logger;
 import edu.illinois.starts.util.Pair;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -68,9 +70,68 @@ public class RunMojo extends DiffMojo implements StartsConstants {
     @Parameter(property = "writeChangedClasses", defaultValue = "false")
     protected boolean writeChangedClasses;
 
+    /**
+     * Set this to "true" to update the test dependencies for the next run on a background thread while
+     * the selected tests run, instead of before they run. The update writes to a staging directory in
+     * .starts, and the "starts" goal waits for it after the tests and only then replaces the artifacts
+     * of the last run. This only has an effect with the "starts" goal; when "run" is invoked by itself,
+     * nothing would wait for the update, so it runs before the tests, as without asyncUpdate.
+     */
+    @Parameter(property = "asyncUpdate", defaultValue = FALSE)
+    protected boolean asyncUpdate;
+
+    /**
+     * Set to "true" in lifecycle.xml for the "run" that the "starts" goal forks, which waits for the update
+     * that asyncUpdate starts. Not meant to be set by users.
+     */
+    @Parameter(defaultValue = FALSE)
+    protected boolean forkedByStarts;
+
+    /**
+     * Set this to "true" to select tests when the classpath changed since the last run, instead of running
+     * all tests. We compare sf-classpath and jar-checksums with those of the last run to find the jars that
+     * were added, removed or changed, and select the tests that reach a class with the name of a class in
+     * such a jar. All tests still run if the change cannot be attributed to jars, e.g., if classpath
+     * elements were reordered, or if an element that is not a jar changed. Only used with ZLC and
+     * useThirdParty, because the classes in jars that tests reach are only tracked with useThirdParty.
+     */
+    @Parameter(property = "diffClassPath", defaultValue = FALSE)
+    protected boolean diffClassPath;
+
+    /**
+     * Set this to "true" to compute the checksum of each jar on the classpath from the checksums of its
+     * entries, instead of from its bytes. The .class entries are hashed like the classes in deps.zlc (with
+     * cleanBytes, if set), so a jar that was packaged again without a real change, e.g., the SNAPSHOT jar
+     * of a sibling module, keeps its checksum and does not make all tests run. The checksums of the entries
+     * are saved in .starts/jar-index, so that with diffClassPath, only the classes that changed in a changed
+     * jar are considered, not all its classes.
+     */
+    @Parameter(property = "jarEntryChecksums", defaultValue = FALSE)
+    protected boolean jarEntryChecksums;
+
+    /**
+     * Set this to "true" to skip the Surefire execution of a module in which no test is affected, instead
+     * of letting Surefire scan for tests and start a JVM to run none of them. In a reactor build, the
+     * modules in which Surefire was skipped so far are reported after each module.
+     */
+    @Parameter(property = "skipIfNoneAffected", defaultValue = FALSE)
+    protected boolean skipIfNoneAffected;
+
+    /**
+     * The time, in milliseconds, that it takes to start a JVM for Surefire, used to estimate the time saved
+     * by skipIfNoneAffected.
+     */
+    @Parameter(property = "forkStartupMillis", defaultValue = "1000")
+    protected long forkStartupMillis;
+
     protected Set<String> nonAffectedTests;
     protected Set<String> changedClasses;
-    protected List<Pair> jarCheckSums = null;
+    protected JarChecksums jarCheckSums = null;
+    private List<String> allTests;
+    private boolean skippedSurefire;
+    // the sf-classpath and jar-checksums to save for the next run, if they changed
+    private String newClassPath;
+    private boolean newJarChecksums;
 
     private Logger logger;
 
@@ -80,7 +141,7 @@ public class RunMojo extends DiffMojo implements StartsConstants {
         long start = System.currentTimeMillis();
         setIncludesExcludes();
         run();
-        Set<String> allTests = new HashSet<>(getTestClasses(CHECK_IF_ALL_AFFECTED));
+        Set<String> allTests = new HashSet<>(getAllTests());
         if (writeNonAffected || logger.getLoggingLevel().intValue() <= Level.FINEST.intValue()) {
             Writer.writeToFile(nonAffectedTests, "non-affected-tests", getArtifactsDir());
         }
@@ -88,6 +149,12 @@ public class RunMojo extends DiffMojo implements StartsConstants {
             logger.log(Level.INFO, STARS_RUN_STARS);
             logger.log(Level.INFO, NO_TESTS_ARE_SELECTED_TO_RUN);
         }
+        if (skipIfNoneAffected && getSession() != null) {
+            ReactorSummary.record(getSession(), getProject(), skippedSurefire, forkStartupMillis);
+        }
+        if (isAsyncUpdate()) {
+            startBackgroundUpdate();
+        }
         long end = System.currentTimeMillis();
         System.setProperty(PROFILE_END_OF_RUN_MOJO, Long.toString(end));
         logger.log(Level.FINE, PROFILE_RUN_MOJO_TOTAL + Writer.millsToSeconds(end - start));
@@ -96,45 +163,152 @@ public class RunMojo extends DiffMojo implements StartsConstants {
     protected void run() throws MojoExecutionException {
         String cpString = Writer.pathToString(getSureFireClassPath().getClassPath());
         List<String> sfPathElements = getCleanClassPath(cpString);
-        if (!isSameClassPath(sfPathElements) || !hasSameJarChecksum(sfPathElements)) {
-            // Force retestAll because classpath changed since last run
-            // don't compute changed and non-affected classes
-            dynamicallyUpdateExcludes(new ArrayList<String>());
-            // Make nonAffected empty so dependencies can be updated
-            nonAffectedTests = new HashSet<>();
-            Writer.writeClassPath(cpString, artifactsDir);
-            Writer.writeJarChecksums(sfPathElements, artifactsDir, jarCheckSums);
+        boolean sameClassPath = isSameClassPath(sfPathElements) && hasSameJarChecksum(sfPathElements);
+        if (!sameClassPath) {
+            ClassPathDiff diff = diffClassPath ? computeClassPathDiff(sfPathElements) : null;
+            if (diff != null && diff.isAttributable()) {
+                // select the tests that reach a class of a changed jar, or a changed class
+                setChangedAndNonaffected(diff.getChangedClasses());
+                if (retestAll) {
+                    dynamicallyUpdateExcludes(new ArrayList<String>());
+                } else {
+                    dynamicallyUpdateSelection();
+                }
+            } else {
+                // Force retestAll because classpath changed since last run
+                // don't compute changed and non-affected classes
+                dynamicallyUpdateExcludes(new ArrayList<String>());
+                // Make nonAffected empty so dependencies can be updated
+                nonAffectedTests = new HashSet<>();
+            }
+            newClassPath = cpString;
+            if (jarCheckSums == null) {
+                jarCheckSums = computeJarChecksums(sfPathElements, null);
+            }
+            newJarChecksums = true;
         } else if (retestAll) {
             // Force retestAll but compute changes and affected tests
             setChangedAndNonaffected();
             dynamicallyUpdateExcludes(new ArrayList<String>());
         } else {
             setChangedAndNonaffected();
-            List<String> excludePaths = Writer.fqnsToExcludePath(nonAffectedTests);
-            dynamicallyUpdateExcludes(excludePaths);
+            dynamicallyUpdateSelection();
+        }
+        if (sameClassPath && updateRunChecksums && jarCheckSums != null && jarCheckSums.hasHashed()) {
+            // a jar was hashed again but its checksum did not change, e.g., a SNAPSHOT jar that was packaged
+            // again; save its new size and modification time, so that we do not hash it again in the next run
+            newJarChecksums = true;
+        }
+        if (asyncUpdate && !isAsyncUpdate() && updateRunChecksums) {
+            logger.log(Level.WARNING, "asyncUpdate only has an effect with the \"starts\" goal; "
+                    + "updating the RTS artifacts before the tests run");
         }
         long startUpdateTime = System.currentTimeMillis();
-        if (updateRunChecksums) {
-            updateForNextRun(nonAffectedTests);
+        if (!isAsyncUpdate()) {
+            saveClassPath();
+            if (updateRunChecksums) {
+                updateForNextRun(nonAffectedTests);
+            }
         }
         long endUpdateTime = System.currentTimeMillis();
         logger.log(Level.FINE, PROFILE_STARTS_MOJO_UPDATE_TIME
                 + Writer.millsToSeconds(endUpdateTime - startUpdateTime));
     }
 
+    private boolean isAsyncUpdate() {
+        return asyncUpdate && updateRunChecksums && forkedByStarts;
+    }
+
+    private void saveClassPath() {
+        if (newClassPath != null) {
+            Writer.writeClassPath(newClassPath, artifactsDir);
+        }
+        if (newJarChecksums) {
+            jarCheckSums.write(artifactsDir);
+        }
+    }
+
+    /**
+     * Start saveClassPath and updateForNextRun on a background thread (see BackgroundUpdate), so that the
+     * classpath of this run is only saved together with the dependencies. This must be the last thing
+     * that this mojo does, because from now on, its artifacts directory is the staging directory.
+     */
+    private void startBackgroundUpdate() throws MojoExecutionException {
+        final Set<String> nonAffected = nonAffectedTests;
+        String realArtifactsDir = getArtifactsDir();
+        File stagingDir = new File(realArtifactsDir, BackgroundUpdate.STAGING_DIR);
+        artifactsDir = stagingDir.getAbsolutePath();
+        logger.log(Level.FINE, "Updating the RTS artifacts in the background");
+        try {
+            BackgroundUpdate.start(realArtifactsDir, stagingDir, new Callable<Void>() {
+                @Override
+                public Void call() throws MojoExecutionException {
+                    saveClassPath();
+                    updateForNextRun(nonAffected);
+                    return null;
+                }
+            });
+        } catch (IOException ioe) {
+            artifactsDir = realArtifactsDir;
+            throw new MojoExecutionException("I could not stage the RTS artifacts for the update", ioe);
+        }
+    }
+
     private void dynamicallyUpdateExcludes(List<String> excludePaths) throws MojoExecutionException {
+        dynamicallyUpdateSelection(SurefireSelection.excludes(getProject().getBasedir(), excludePaths));
+    }
+
+    /**
+     * Hand over the non-affected tests as excludes, or the affected tests as includes, whichever is fewer;
+     * with skipIfNoneAffected, skip Surefire if there are no affected tests.
+     */
+    private void dynamicallyUpdateSelection() throws MojoExecutionException {
+        Set<String> affectedTests = new HashSet<>(getAllTests());
+        affectedTests.removeAll(nonAffectedTests);
+        if (skipIfNoneAffected && affectedTests.isEmpty()) {
+            logger.log(Level.FINE, "Skipping Surefire, as no tests are affected");
+            skippedSurefire = true;
+            dynamicallyUpdateSelection(SurefireSelection.skip(getProject().getBasedir()));
+            return;
+        }
+        SurefireSelection selection = SurefireSelection.cheaperOf(getProject().getBasedir(),
+                Writer.fqnsToExcludePath(affectedTests), Writer.fqnsToExcludePath(nonAffectedTests));
+        String handedOver = selection.isInclude() ? affectedTests.size() + " affected tests as includes"
+                : nonAffectedTests.size() + " non-affected tests as excludes";
+        logger.log(Level.FINE, "Handing over " + handedOver + " to Surefire");
+        dynamicallyUpdateSelection(selection);
+    }
+
+    private void dynamicallyUpdateSelection(SurefireSelection selection) throws MojoExecutionException {
         if (AgentLoader.loadDynamicAgent()) {
             logger.log(Level.FINEST, "AGENT LOADED!!!");
-            System.setProperty(STARTS_EXCLUDE_PROPERTY, Arrays.toString(excludePaths.toArray(new String[0])));
+            File selectionFile = new File(getArtifactsDir(), SurefireSelection.FILE_NAME);
+            try {
+                selection.write(selectionFile);
+            } catch (IOException ioe) {
+                throw new MojoExecutionException("I could not write the selection for Surefire", ioe);
+            }
+            System.setProperty(STARTS_SELECTION_FILE, selectionFile.getAbsolutePath());
         } else {
             throw new MojoExecutionException("I COULD NOT ATTACH THE AGENT");
         }
     }
 
+    private List<String> getAllTests() {
+        if (allTests == null) {
+            allTests = getTestClasses(CHECK_IF_ALL_AFFECTED);
+        }
+        return allTests;
+    }
+
     protected void setChangedAndNonaffected() throws MojoExecutionException {
+        setChangedAndNonaffected(new HashSet<String>());
+    }
+
+    private void setChangedAndNonaffected(Set<String> changedJarClasses) throws MojoExecutionException {
         nonAffectedTests = new HashSet<>();
         changedClasses = new HashSet<>();
-        Pair<Set<String>, Set<String>> data = computeChangeData(writeChangedClasses);
+        Pair<Set<String>, Set<String>> data = computeChangeData(writeChangedClasses, changedJarClasses);
         nonAffectedTests = data == null ? new HashSet<String>() : data.getKey();
         changedClasses  = data == null ? new HashSet<String>() : data.getValue();
     }
@@ -143,48 +317,70 @@ public class RunMojo extends DiffMojo implements StartsConstants {
         if (sfPathString.isEmpty()) {
             return true;
         }
+        List<String> oldClassPathelements = readOldClassPath();
+        // comparing lists and not sets in case order changes
+        return sfPathString.equals(oldClassPathelements);
+    }
+
+    /**
+     * Read the clean classpath of the last run from sf-classpath.
+     *
+     * @return The elements of the classpath, or null if there is no sf-classpath file or it cannot be read
+     */
+    private List<String> readOldClassPath() throws MojoExecutionException {
         String oldSfPathFileName = Paths.get(getArtifactsDir(), SF_CLASSPATH).toString();
         if (!new File(oldSfPathFileName).exists()) {
-            return false;
+            return null;
         }
         try {
             List<String> oldClassPathLines = Files.readAllLines(Paths.get(oldSfPathFileName));
             if (oldClassPathLines.size() != 1) {
                 throw new MojoExecutionException(SF_CLASSPATH + " is corrupt! Expected only 1 line.");
             }
-            List<String> oldClassPathelements = getCleanClassPath(oldClassPathLines.get(0));
-            // comparing lists and not sets in case order changes
-            if (sfPathString.equals(oldClassPathelements)) {
-                return true;
+            return getCleanClassPath(oldClassPathLines.get(0));
+        } catch (IOException ioe) {
+            ioe.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Diff the classpath of the last run with the current one, or return null if we cannot select tests by
+     * the diff with the current configuration. This must run before sf-classpath and jar-checksums are
+     * written for the next run.
+     */
+    private ClassPathDiff computeClassPathDiff(List<String> cleanSfClassPath) throws MojoExecutionException {
+        if (depFormat != DependencyFormat.ZLC || !useThirdParty) {
+            logger.log(Level.FINE, "diffClassPath needs ZLC and useThirdParty; running all tests");
+            return null;
+        }
+        try {
+            JarChecksums oldCheckSums = JarChecksums.read(getArtifactsDir());
+            if (jarCheckSums == null) {
+                jarCheckSums = computeJarChecksums(cleanSfClassPath, oldCheckSums);
             }
+            return ClassPathDiff.compute(readOldClassPath(), oldCheckSums, cleanSfClassPath, jarCheckSums);
         } catch (IOException ioe) {
             ioe.printStackTrace();
+            return null;
         }
-        return false;
     }
 
     private boolean hasSameJarChecksum(List<String> cleanSfClassPath) throws MojoExecutionException {
         if (cleanSfClassPath.isEmpty()) {
             return true;
         }
-        String oldChecksumPathFileName = Paths.get(getArtifactsDir(), JAR_CHECKSUMS).toString();
-        if (!new File(oldChecksumPathFileName).exists()) {
-            return false;
-        }
         boolean noException = true;
         try {
-            List<String> lines = Files.readAllLines(Paths.get(oldChecksumPathFileName));
-            Map<String, String> checksumMap = new HashMap<>();
-            for (String line : lines) {
-                String[] elems = line.split(COMMA);
-                checksumMap.put(elems[0], elems[1]);
+            JarChecksums oldCheckSums = JarChecksums.read(getArtifactsDir());
+            if (oldCheckSums == null) {
+                return false;
             }
-            jarCheckSums = new ArrayList<>();
+            // only the jars whose size or modification time changed are hashed again
+            jarCheckSums = computeJarChecksums(cleanSfClassPath, oldCheckSums);
             for (String path : cleanSfClassPath) {
-                Pair<String, String> pair = Writer.getJarToChecksumMapping(path);
-                jarCheckSums.add(pair);
-                String oldCS = checksumMap.get(pair.getKey());
-                noException &= pair.getValue().equals(oldCS);
+                String oldCS = oldCheckSums.getChecksum(path);
+                noException &= oldCS != null && oldCS.equals(jarCheckSums.getChecksum(path));
             }
         } catch (IOException ioe) {
             noException = false;
@@ -195,6 +391,10 @@ public class RunMojo extends DiffMojo implements StartsConstants {
         return noException;
     }
 
+    private JarChecksums computeJarChecksums(List<String> cleanSfClassPath, JarChecksums oldCheckSums) {
+        return JarChecksums.compute(cleanSfClassPath, oldCheckSums, parallelism, jarEntryChecksums, cleanBytes);
+    }
+
     private List<String> getCleanClassPath(String cp) {
         List<String> cpPaths = new ArrayList<>();
         String[] paths = cp.split(File.pathSeparator);
@@ -27,8 +27,11 @@ public class StartsMojo extends RunMojo implements StartsConstants {
         long endOfRunMojo = Long.parseLong(System.getProperty(PROFILE_END_OF_RUN_MOJO));
         Logger.getGlobal().setLoggingLevel(Level.parse(loggingLevel));
         logger = Logger.getGlobal();
+        long endOfTests = System.currentTimeMillis();
+        logger.log(Level.FINE, PROFILE_TEST_RUNNING_TIME + Writer.millsToSeconds(endOfTests - endOfRunMojo));
+        // with asyncUpdate, wait for the update of the artifacts that RunMojo started before the tests
+        BackgroundUpdate.finish(getArtifactsDir());
         long end = System.currentTimeMillis();
-        logger.log(Level.FINE, PROFILE_TEST_RUNNING_TIME + Writer.millsToSeconds(end - endOfRunMojo));
         logger.log(Level.FINE, "[PROFILE] STARTS-MOJO-TOTAL: " + Writer.millsToSeconds(end - endOfRunMojo));
     }
 }
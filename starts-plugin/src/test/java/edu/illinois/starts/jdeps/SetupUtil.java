@@ -30,4 +30,16 @@ public class SetupUtil {
             Files.write(path, content.getBytes(charset));
         }
     }
+
+    public void writeFile(File file, String content) throws IOException {
+        if (zlcFile.exists()) {
+            Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    public void deleteFile(File file) {
+        if (zlcFile.exists()) {
+            file.delete();
+        }
+    }
 }
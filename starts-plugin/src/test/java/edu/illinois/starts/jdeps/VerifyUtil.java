@@ -6,11 +6,24 @@ package edu.illinois.starts.jdeps;
 
 import java.io.File;
 import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 import edu.illinois.starts.constants.StartsConstants;
+import edu.illinois.starts.data.DependencyGraph;
+import edu.illinois.starts.data.ZLCData;
+import edu.illinois.starts.data.ZLCFileContent;
+import edu.illinois.starts.data.ZLCFormat;
+import edu.illinois.starts.helpers.Loadables;
+import edu.illinois.starts.helpers.ZLCHelper;
 
 import org.junit.Assert;
 
@@ -41,6 +54,43 @@ public class VerifyUtil implements StartsConstants {
         Assert.assertFalse("Log shouldn't contains string: " + value, buildLog.contains(value));
     }
 
+    /**
+     * Check that the deps.zlc (in PLAIN_TEXT format) that STARTS wrote has the same rows as one that is
+     * rebuilt from scratch from the graph and the tests of the same run, which STARTS writes with FINEST logging.
+     */
+    public void assertSameAsFullRebuild(File basedir) throws IOException {
+        File artifactsDir = new File(basedir, STARTS_DIRECTORY_PATH);
+        List<String> tests = Files.readAllLines(new File(artifactsDir, "all-tests").toPath(), Charset.defaultCharset());
+        DependencyGraph.Builder builder = new DependencyGraph.Builder();
+        Loadables.addEdgesToGraphBuilder(builder,
+                Files.readAllLines(new File(artifactsDir, "graph").toPath(), Charset.defaultCharset()));
+        Map<String, Set<String>> testDeps = Loadables.getTransitiveClosurePerClass(builder.build(), tests);
+        URL[] urls = {new File(basedir, "target/classes/").toURI().toURL(),
+            new File(basedir, "target/test-classes/").toURI().toURL()};
+        try (URLClassLoader loader = new URLClassLoader(urls, null)) {
+            ZLCFileContent rebuilt = ZLCHelper.createZLCData(testDeps, loader, false, ZLCFormat.PLAIN_TEXT);
+            Map<String, String> expected = new HashMap<>();
+            for (ZLCData data : rebuilt.getZlcData()) {
+                expected.put(data.getUrl().toExternalForm(), data.getChecksum() + WHITE_SPACE
+                        + new TreeSet<>(data.getTestsStr()));
+            }
+            Map<String, String> actual = new HashMap<>();
+            for (String line : Files.readAllLines(new File(artifactsDir, ZLCHelper.zlcFile).toPath(),
+                    Charset.defaultCharset())) {
+                String[] parts = line.split(WHITE_SPACE);
+                if (parts.length < 2) {
+                    continue;
+                }
+                Set<String> rowTests = new TreeSet<>();
+                if (parts.length == 3) {
+                    rowTests.addAll(Arrays.asList(parts[2].split(COMMA)));
+                }
+                actual.put(parts[0], parts[1] + WHITE_SPACE + rowTests);
+            }
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
     public void deleteFile(File file) {
         if (file.exists()) {
             file.delete();